@@ -18,6 +18,7 @@ package net.oneandone.sushi.archive;
 import net.oneandone.sushi.fs.Node;
 import net.oneandone.sushi.fs.World;
 import net.oneandone.sushi.io.Buffer;
+import net.oneandone.sushi.io.BufferPool;
 import net.oneandone.sushi.util.Strings;
 
 import java.io.IOException;
@@ -84,11 +85,13 @@ public class Archive {
 
     /** @return this */
     public Archive read(Node file) throws IOException {
+        BufferPool pool;
         Buffer buffer;
         ZipEntry entry;
         Node node;
         
-        buffer = file.getWorld().getBuffer();
+        pool = file.getWorld().getBufferPool();
+        buffer = pool.allocate();
         try (ZipInputStream zip = new ZipInputStream(file.createInputStream())) {
             while (true) {
                 entry = zip.getNextEntry();
@@ -110,6 +113,8 @@ public class Archive {
                     zip.closeEntry();
                 }
             }
+        } finally {
+            pool.free(buffer);
         }
         return this;
     }
@@ -167,7 +172,7 @@ public class Archive {
             for (Node file : files) {
                 try (InputStream in = file.createInputStream()) {
                     out.putNextEntry(new ZipEntry(Strings.removeLeft(file.getPath(), pathRoot)));
-                    file.getWorld().getBuffer().copy(in, out);
+                    file.getWorld().getBufferPool().copy(in, out);
                     out.closeEntry();
                 }
             }
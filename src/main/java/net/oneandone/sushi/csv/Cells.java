@@ -0,0 +1,310 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.sushi.csv;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Flyweight alternative to Line: a parsed line stored as offsets into the parsed characters. Once the internal arrays
+ * have grown to the widest line, parsing allocates nothing; strings are created when values are accessed. An instance
+ * is reused for subsequent lines, so values are valid until the next call to parse, and only as long as the parsed
+ * characters don't change. Not thread-safe.
+ */
+public class Cells {
+    private static final int INITIAL_SIZE = 16;
+
+    private final Format format;
+
+    private CharSequence chars;
+
+    /** for parse(char[], ...) */
+    private char[] array;
+    private CharBuffer wrapped;
+
+    /** number of cells */
+    private int size;
+
+    /** index of the first value of a cell */
+    private int[] cellFirst;
+
+    /** number of values of a cell, -1 for null */
+    private int[] cellCount;
+
+    /** number of values */
+    private int count;
+    private int[] valueStart;
+    private int[] valueEnd;
+
+    /** true if the value contains escapes or doubled quotes */
+    private boolean[] valueEscaped;
+
+    public Cells(Format format) {
+        this.format = format;
+        this.chars = "";
+        this.array = null;
+        this.wrapped = null;
+        this.size = 0;
+        this.cellFirst = new int[INITIAL_SIZE];
+        this.cellCount = new int[INITIAL_SIZE];
+        this.count = 0;
+        this.valueStart = new int[INITIAL_SIZE];
+        this.valueEnd = new int[INITIAL_SIZE];
+        this.valueEscaped = new boolean[INITIAL_SIZE];
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    //-- parsing; same grammar as Format.read
+
+    public Cells parse(CharSequence line) throws CsvLineException {
+        return parse(line, 0, line.length());
+    }
+
+    public Cells parse(char[] line, int start, int end) throws CsvLineException {
+        if (line != array) {
+            array = line;
+            wrapped = CharBuffer.wrap(line);
+        }
+        return parse(wrapped, start, end);
+    }
+
+    /** Parses the specified window of line. On errors, the content of this object is undefined. */
+    public Cells parse(CharSequence line, int start, int end) throws CsvLineException {
+        int idx;
+
+        chars = line;
+        size = 0;
+        count = 0;
+        idx = start;
+        while (true) {
+            idx = cell(idx, end);
+            if (idx == end) {
+                return this;
+            }
+            if (chars.charAt(idx) != format.separator) {
+                throw new CsvLineException("separator expected");
+            }
+            idx++;
+        }
+    }
+
+    private int cell(int idx, int end) throws CsvLineException {
+        boolean quoted;
+
+        quoted = idx < end && chars.charAt(idx) == format.quote;
+        if (quoted) {
+            idx++;
+        }
+        idx = values(idx, end, quoted);
+        if (quoted) {
+            if (idx == end || chars.charAt(idx) != format.quote) {
+                throw new CsvLineException("quote not closed");
+            }
+            idx++;
+        }
+        return idx;
+    }
+
+    private int values(int idx, int end, boolean quoted) throws CsvLineException {
+        int cell;
+        char terminator;
+
+        if (size == cellFirst.length) {
+            cellFirst = Arrays.copyOf(cellFirst, size * 2);
+            cellCount = Arrays.copyOf(cellCount, size * 2);
+        }
+        cell = size++;
+        cellFirst[cell] = count;
+        terminator = quoted ? format.quote : format.separator;
+        if (keyword(format.nul, idx, end, terminator)) {
+            cellCount[cell] = -1;
+            return idx + format.nul.length();
+        }
+        if (keyword(format.empty, idx, end, terminator)) {
+            cellCount[cell] = 0;
+            return idx + format.empty.length();
+        }
+        while (true) {
+            idx = value(idx, end, quoted);
+            if (idx == end || chars.charAt(idx) != format.valueSeparator) {
+                break;
+            }
+            idx++;
+        }
+        cellCount[cell] = count - cellFirst[cell];
+        return idx;
+    }
+
+    private boolean keyword(String keyword, int idx, int end, char terminator) {
+        int after;
+
+        after = idx + keyword.length();
+        if (after > end) {
+            return false;
+        }
+        for (int i = 0; i < keyword.length(); i++) {
+            if (chars.charAt(idx + i) != keyword.charAt(i)) {
+                return false;
+            }
+        }
+        return after == end || chars.charAt(after) == terminator;
+    }
+
+    private int value(int idx, int end, boolean quoted) throws CsvLineException {
+        int start;
+        boolean escaped;
+        char c;
+
+        start = idx;
+        escaped = false;
+        while (idx < end) {
+            c = chars.charAt(idx);
+            if (c == format.quote) {
+                if (idx + 1 < end && chars.charAt(idx + 1) == format.quote) {
+                    escaped = true;
+                    idx += 2;
+                    continue;
+                }
+                break;
+            } else if (c == format.separator) {
+                if (!quoted) {
+                    break;
+                }
+            } else if (c == format.valueSeparator) {
+                break;
+            } else if (c == format.escape) {
+                if (idx + 1 == end) {
+                    throw new CsvLineException("tailing escape character " + format.escape);
+                }
+                escaped = true;
+                idx++;
+            }
+            idx++;
+        }
+        if (count == valueStart.length) {
+            valueStart = Arrays.copyOf(valueStart, count * 2);
+            valueEnd = Arrays.copyOf(valueEnd, count * 2);
+            valueEscaped = Arrays.copyOf(valueEscaped, count * 2);
+        }
+        valueStart[count] = start;
+        valueEnd[count] = idx;
+        valueEscaped[count] = escaped;
+        count++;
+        return idx;
+    }
+
+    //-- access
+
+    /** @return number of cells */
+    public int size() {
+        return size;
+    }
+
+    public boolean isNull(int cell) {
+        return cellCount(cell) == -1;
+    }
+
+    /** @return number of values of the cell; 0 for null cells */
+    public int values(int cell) {
+        return Math.max(0, cellCount(cell));
+    }
+
+    public String get(int cell, int value) {
+        int idx;
+
+        idx = index(cell, value);
+        if (!valueEscaped[idx]) {
+            return chars.subSequence(valueStart[idx], valueEnd[idx]).toString();
+        }
+        return append(cell, value, new StringBuilder(valueEnd[idx] - valueStart[idx])).toString();
+    }
+
+    /** Like get, but appends the value to dest instead of creating a string. */
+    public StringBuilder append(int cell, int value, StringBuilder dest) {
+        int idx;
+        int end;
+        char c;
+
+        idx = index(cell, value);
+        end = valueEnd[idx];
+        if (!valueEscaped[idx]) {
+            return dest.append(chars, valueStart[idx], end);
+        }
+        for (int i = valueStart[idx]; i < end; i++) {
+            c = chars.charAt(i);
+            if (c == format.quote || c == format.escape) {
+                // doubled quote or escaped character
+                i++;
+                c = chars.charAt(i);
+            }
+            dest.append(c);
+        }
+        return dest;
+    }
+
+    /** Same semantics as Line.getOne */
+    public String getOne(int cell) {
+        switch (cellCount(cell)) {
+            case -1:
+                throw new ViewException("cell is null: " + cell);
+            case 0:
+                throw new ViewException("cell is empty: " + cell);
+            case 1:
+                return get(cell, 0);
+            default:
+                throw new ViewException("cell with multiple values");
+        }
+    }
+
+    /** @return the current line as a new Line object */
+    public Line toLine() {
+        Line result;
+        List<String> lst;
+        int max;
+
+        result = new Line();
+        for (int cell = 0; cell < size; cell++) {
+            max = cellCount[cell];
+            if (max == -1) {
+                result.addNull();
+            } else {
+                lst = result.add();
+                for (int value = 0; value < max; value++) {
+                    lst.add(get(cell, value));
+                }
+            }
+        }
+        return result;
+    }
+
+    private int cellCount(int cell) {
+        if (cell < 0 || cell >= size) {
+            throw new IndexOutOfBoundsException("cell " + cell + ", size " + size);
+        }
+        return cellCount[cell];
+    }
+
+    private int index(int cell, int value) {
+        if (value < 0 || value >= cellCount(cell)) {
+            throw new IndexOutOfBoundsException("cell " + cell + ", value " + value);
+        }
+        return cellFirst[cell] + value;
+    }
+}
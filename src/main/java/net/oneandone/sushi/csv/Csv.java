@@ -32,14 +32,16 @@ public class Csv implements Iterable<Line> {
     public static Csv read(Format format, Node node) throws IOException {
         StringBuilder msg;
         Csv csv;
-        String line;
+        Cells cells;
+        CharSequence line;
 
         try (Reader orig = node.createReader();
              LineReader src = new LineReader(orig, new LineFormat(LineFormat.GENERIC_SEPARATOR, LineFormat.Trim.SEPARATOR))) {
             csv = new Csv(format);
+            cells = new Cells(format);
             msg = new StringBuilder();
             while (true) {
-                line = src.next();
+                line = src.nextSequence();
                 if (line == null) {
                     if (msg.length() > 0) {
                         throw new CsvExceptions(msg.toString());
@@ -47,7 +49,7 @@ public class Csv implements Iterable<Line> {
                     return csv;
                 }
                 try {
-                    csv.add(line);
+                    csv.add(cells.parse(line).toLine());
                 } catch (CsvLineException e) {
                     if (msg.length() > 0) {
                         msg.append('\n');
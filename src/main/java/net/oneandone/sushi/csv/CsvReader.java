@@ -0,0 +1,256 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.sushi.csv;
+
+import net.oneandone.sushi.fs.LineFormat;
+import net.oneandone.sushi.fs.LineReader;
+import net.oneandone.sushi.fs.Node;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads lines one at a time, without keeping them in memory like Csv.read. In contrast to Csv.read, a quoted cell may
+ * span multiple lines. Lines are not merged, even if the format is. Like Csv.read, errors are collected and reported
+ * when the end of input is reached.
+ */
+public class CsvReader implements Iterable<Line>, Closeable {
+    public static final int DEFAULT_MAX_RECORD_LENGTH = 1024 * 1024;
+
+    /** errors reported with their message; others are just counted */
+    private static final int MAX_ERRORS = 100;
+
+    public static CsvReader open(Format format, Node node) throws IOException {
+        return new CsvReader(format, node.createReader(), node.toString());
+    }
+
+    //--
+
+    private final Format format;
+    private final LineReader src;
+    private final String name;
+    private final int lineOffset;
+    private int maxRecordLength;
+    private final Cells cells;
+
+    /** lines of a record with a quoted cell that is still open */
+    private final StringBuilder record;
+    /** true while discarding the rest of a record that exceeded maxRecordLength, i.e. its quote is still open */
+    private boolean skipping;
+    /** true if the last record returned refers to record */
+    private boolean joined;
+    private int recordLine;
+    private int line;
+
+    private final StringBuilder errors;
+    private int errorCount;
+    private boolean reported;
+
+    /** @param name to prefix error messages */
+    public CsvReader(Format format, Reader reader, String name) {
+        this(format, reader, name, 0);
+    }
+
+    /** @param lineOffset number of lines preceding the input, to report line numbers of a file part */
+    CsvReader(Format format, Reader reader, String name, int lineOffset) {
+        this.format = format;
+        this.lineOffset = lineOffset;
+        this.src = new LineReader(reader, new LineFormat(LineFormat.GENERIC_SEPARATOR, LineFormat.Trim.NOTHING));
+        this.name = name;
+        this.maxRecordLength = DEFAULT_MAX_RECORD_LENGTH;
+        this.cells = new Cells(format);
+        this.record = new StringBuilder();
+        this.skipping = false;
+        this.joined = false;
+        this.recordLine = 0;
+        this.line = 0;
+        this.errors = new StringBuilder();
+        this.errorCount = 0;
+        this.reported = false;
+    }
+
+    /**
+     * Records spanning more characters are reported as errors instead of buffering the rest of the input. The rest of
+     * such a record is skipped until its quote is closed, then reading resumes with the next record.
+     */
+    public CsvReader setMaxRecordLength(int maxRecordLength) {
+        this.maxRecordLength = maxRecordLength;
+        return this;
+    }
+
+    public int getMaxRecordLength() {
+        return maxRecordLength;
+    }
+
+    /** @return number of the first line of the record returned by the last call to next. First line has number 1. */
+    public int getLine() {
+        return line;
+    }
+
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * @return next line or null for end of input
+     * @throws CsvExceptions at the end of input if there were errors
+     */
+    public Line next() throws IOException {
+        return next(cells) == null ? null : cells.toLine();
+    }
+
+    /**
+     * Like next, but parses into dest instead of creating a Line. The values of dest refer to the internal buffer;
+     * they are only valid until the next call to this reader.
+     *
+     * @param dest has to use the format of this reader
+     * @return dest or null for end of input
+     */
+    public Cells next(Cells dest) throws IOException {
+        CharSequence str;
+
+        if (joined) {
+            record.setLength(0);
+            joined = false;
+        }
+        while (true) {
+            str = src.nextSequence();
+            if (str == null) {
+                if (record.length() > 0) {
+                    joined = true;
+                    if (parse(record, recordLine, dest)) {
+                        return dest;
+                    }
+                    record.setLength(0);
+                    joined = false;
+                }
+                if (errorCount > 0 && !reported) {
+                    reported = true;
+                    if (errorCount > MAX_ERRORS) {
+                        errors.append("\n... ").append(errorCount - MAX_ERRORS).append(" more errors");
+                    }
+                    throw new CsvExceptions(errors.toString());
+                }
+                return null;
+            }
+            if (skipping) {
+                skipping = format.quoteOpen(str, true);
+                continue;
+            }
+            if (record.length() == 0) {
+                if (!format.quoteOpen(str, false)) {
+                    if (parse(str, lineOffset + src.getLine(), dest)) {
+                        return dest;
+                    }
+                    continue;
+                }
+                recordLine = lineOffset + src.getLine();
+                record.append(str);
+            } else {
+                // the quote is open, otherwise the record would be complete
+                record.append(str);
+                if (!format.quoteOpen(str, true)) {
+                    joined = true;
+                    if (parse(record, recordLine, dest)) {
+                        return dest;
+                    }
+                    record.setLength(0);
+                    joined = false;
+                    continue;
+                }
+            }
+            if (record.length() > maxRecordLength) {
+                error(recordLine, "quote not closed within " + maxRecordLength + " characters");
+                record.setLength(0);
+                record.trimToSize();
+                skipping = true;
+            }
+        }
+    }
+
+    /** @return false if str is malformed */
+    private boolean parse(CharSequence str, int number, Cells dest) {
+        int end;
+
+        end = str.length();
+        while (end > 0 && (str.charAt(end - 1) == '\n' || str.charAt(end - 1) == '\r')) {
+            end--;
+        }
+        try {
+            line = number;
+            dest.parse(str, 0, end);
+            return true;
+        } catch (CsvLineException e) {
+            error(number, e.getMessage());
+            return false;
+        }
+    }
+
+    private void error(int number, String msg) {
+        errorCount++;
+        if (errorCount <= MAX_ERRORS) {
+            if (errors.length() > 0) {
+                errors.append('\n');
+            }
+            errors.append(name).append(":").append(number).append(": ").append(msg);
+        }
+    }
+
+    /** IOExceptions, including CsvExceptions, are wrapped in RuntimeExceptions. */
+    @Override
+    public Iterator<Line> iterator() {
+        return new Iterator<Line>() {
+            private Line next = null;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = CsvReader.this.next();
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Line next() {
+                Line result;
+
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                result = next;
+                next = null;
+                return result;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        src.close();
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.sushi.csv;
+
+import net.oneandone.sushi.fs.Node;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/** Writes lines one at a time, without collecting them in a Csv first. Lines are not merged, even if the format is. */
+public class CsvWriter implements Closeable, Flushable {
+    public static CsvWriter open(Format format, Node node) throws IOException {
+        return new CsvWriter(format, node.createWriter());
+    }
+
+    private final Format format;
+    private final Writer dest;
+    private int count;
+
+    public CsvWriter(Format format, Writer dest) {
+        this.format = format;
+        this.dest = dest;
+        this.count = 0;
+    }
+
+    public CsvWriter write(Line line) throws IOException {
+        format.write(line, dest);
+        count++;
+        return this;
+    }
+
+    public CsvWriter writeAll(Iterable<Line> lines) throws IOException {
+        for (Line line : lines) {
+            write(line);
+        }
+        return this;
+    }
+
+    /** @return number of lines written */
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        dest.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        dest.close();
+    }
+}
@@ -58,22 +58,25 @@ public class Format {
     public final boolean merged;
 
     /** between cells */
-    private final char separator;
+    final char separator;
     
     /** between values */
-    private final char valueSeparator;
+    final char valueSeparator;
 
-    private final String empty;
+    final String empty;
     
-    private final String nul;
+    final String nul;
     
     /** escape special characters */
-    private final char escape;
+    final char escape;
     
     /** to quote cells */
-    private final char quote;
+    final char quote;
 
     private final String unquoted;
+
+    /** reused by read(String), which would otherwise allocate a new parser per line */
+    private final ThreadLocal<Cells> cells;
     
     public Format() {
         this(false);
@@ -96,103 +99,52 @@ public class Format {
         this.escape = escape;
         this.quote = quote;
         this.unquoted = unquoted;
+        this.cells = new ThreadLocal<Cells>() {
+            @Override
+            protected Cells initialValue() {
+                return new Cells(Format.this);
+            }
+        };
     }
     
     public Line read(String line) throws CsvLineException {
-        Line result;
-        Source src;
-        int c;
-        
-        result = new Line();
-        src = new Source(line);
-        while (true) {
-            cell(src, result);
-            c = src.peek();
-            if (c == Source.END) {
-                return result;
-            }
-            if (c != separator) {
-                throw new CsvLineException("separator expected");
-            }
-            src.eat();
-        }
-    }
-
-    private void cell(Source src, Line result) throws CsvLineException {
-        boolean quoted;
-        
-        quoted = src.peek() == quote;
-        if (quoted) {
-            src.eat();
-        }
-        values(src, quoted, result);
-        if (quoted) {
-            if (src.peek() != quote) {
-                throw new CsvLineException("quote not closed");
-            }
-            src.eat();
-        }
+        return cells.get().parse(line).toLine();
     }
 
-    private void values(Source src, boolean quoted, Line result) throws CsvLineException {
-        List<String> values;
-
-        if (src.eat(nul, quoted ? quote : separator)) {
-            result.addNull();
-            return;
-        }
-        values = result.add();
-        if (src.eat(empty, quoted ? quote : separator)) {
-            return;
-        }
-        while (true) {
-            value(src, quoted, values);
-            if (src.peek() != valueSeparator) {
-                return;
-            }
-            src.eat();
-        }
-    }
+    /**
+     * Scans str for quoted cells, without parsing values.
+     *
+     * @param open true if str starts inside a quoted cell
+     * @return true if str ends inside a quoted cell, i.e. the record continues on the next line
+     */
+    boolean quoteOpen(CharSequence str, boolean open) {
+        boolean start;
+        char c;
 
-    private void value(Source src, boolean quoted, List<String> values) throws CsvLineException { 
-        StringBuilder builder;
-        int c;
-        
-        builder = new StringBuilder();
-        while (true) {
-            c = src.peek();
-            if (c == -1) {
-                break;
-            } else if (c == quote) {
-                if (src.peekNext() == quote) {
-                    src.eat();
-                    builder.append(quote);
-                } else {
-                    break;
+        start = !open;
+        for (int i = 0, max = str.length(); i < max; i++) {
+            c = str.charAt(i);
+            if (c == escape) {
+                i++;
+                start = false;
+            } else if (open) {
+                if (c == quote) {
+                    if (i + 1 < max && str.charAt(i + 1) == quote) {
+                        i++;
+                    } else {
+                        open = false;
+                    }
                 }
             } else if (c == separator) {
-                if (quoted) {
-                    builder.append(c);
-                } else {
-                    break;
-                }
-            } else if (c == valueSeparator) {
-                break;
-            } else if (c == escape) {
-                src.eat();
-                c = src.peek();
-                if (c == Source.END) {
-                    throw new CsvLineException("tailing escape character " + escape);
-                }
-                builder.append((char) c);
+                start = true;
             } else {
-                builder.append((char) c);
+                open = start && c == quote;
+                start = false;
             }
-            src.eat();
         }
-        values.add(builder.toString());
+        return open;
     }
-    
+
     //--
     
     public String write(Line line) {
@@ -0,0 +1,533 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.sushi.csv;
+
+import net.oneandone.sushi.fs.file.FileNode;
+import net.oneandone.sushi.util.Futures;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Reads a file with the semantics of CsvReader, but parses parts of the file concurrently. The file is split into
+ * ranges of about chunkSize bytes. A first pass scans the ranges concurrently for quotes and line separators to
+ * move range boundaries to the start of a record, e.g. if a quoted cell spans the nominal boundary. A second pass
+ * parses the ranges. Files with an encoding where the separators and quotes are not single bytes are parsed in one
+ * range.
+ */
+public class ParallelCsvReader {
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Receives lines */
+    public interface Sink {
+        void add(Line line) throws IOException;
+    }
+
+    private final Format format;
+    private final ForkJoinPool pool;
+    private int chunkSize;
+
+    public ParallelCsvReader(Format format, ForkJoinPool pool) {
+        this.format = format;
+        this.pool = pool;
+        this.chunkSize = DEFAULT_CHUNK_SIZE;
+    }
+
+    public ParallelCsvReader setChunkSize(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /** Reads all lines into a new Csv, in file order; merged formats are merged like Csv.read does. */
+    public Csv read(FileNode file) throws IOException {
+        final Csv result;
+
+        result = new Csv(format);
+        read(file, new Sink() {
+            @Override
+            public void add(Line line) {
+                result.add(line);
+            }
+        }, true);
+        return result;
+    }
+
+    /**
+     * @param ordered true to invoke the sink from the calling thread in file order. Otherwise, the sink is invoked
+     *                from pool threads as soon as lines are parsed; it has to be thread-safe, and lines are in file order
+     *                only within a range.
+     * @throws CsvExceptions after all lines have been passed to the sink if there were errors
+     */
+    public void read(FileNode file, Sink sink, boolean ordered) throws IOException {
+        Charset charset;
+        List<Range> ranges;
+        String errors;
+
+        charset = Charset.forName(file.getWorld().getSettings().encoding);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ranges = split(channel, charset);
+            errors = parse(file.toString(), channel, charset, ranges, sink, ordered);
+        }
+        if (!errors.isEmpty()) {
+            throw new CsvExceptions(errors);
+        }
+    }
+
+    //-- first pass
+
+    private List<Range> split(final FileChannel channel, Charset charset) throws IOException {
+        long size;
+        List<Long> starts;
+        long start;
+        List<Callable<Scan>> scans;
+        List<Scan> scanned;
+        List<Range> result;
+        Scan scan;
+        boolean open;
+        int lines;
+
+        size = channel.size();
+        result = new ArrayList<>();
+        if (size <= chunkSize || !splittable(charset)) {
+            result.add(new Range(0, size, 0));
+            return result;
+        }
+        starts = new ArrayList<>();
+        starts.add(0L);
+        start = lineStart(channel, chunkSize, size);
+        while (start < size) {
+            starts.add(start);
+            start = lineStart(channel, start + chunkSize, size);
+        }
+        scans = new ArrayList<>(starts.size());
+        for (int i = 0; i < starts.size(); i++) {
+            final long from = starts.get(i);
+            final long to = i + 1 < starts.size() ? starts.get(i + 1) : size;
+            scans.add(new Callable<Scan>() {
+                @Override
+                public Scan call() throws IOException {
+                    return scan(channel, from, to);
+                }
+            });
+        }
+        scanned = all(submit(scans));
+        // the first range starts outside of quotes; a range starting inside quotes is parsed as part of the
+        // previous range up to the end of the record
+        open = false;
+        lines = 0;
+        for (int i = 0; i < scanned.size(); i++) {
+            scan = scanned.get(i);
+            if (!open) {
+                result.add(new Range(starts.get(i), 0, lines));
+            } else if (scan.record != -1) {
+                result.add(new Range(scan.record, 0, lines + scan.recordLines));
+            }
+            open = scan.open[open ? 1 : 0];
+            lines += scan.lines;
+        }
+        for (int i = 0; i < result.size(); i++) {
+            result.get(i).end = i + 1 < result.size() ? result.get(i + 1).start : size;
+        }
+        return result;
+    }
+
+    /** @return true if line separators, quotes, escapes and separators are recognizable by looking at single bytes */
+    private boolean splittable(Charset charset) {
+        String name;
+
+        name = charset.name();
+        if (!name.equals("UTF-8") && !name.equals("US-ASCII") && !name.startsWith("ISO-8859-")
+                && !name.startsWith("windows-125")) {
+            return false;
+        }
+        return ascii(format.quote) && ascii(format.escape) && ascii(format.separator);
+    }
+
+    private static boolean ascii(char c) {
+        return c < 0x80 && c != '\n' && c != '\r';
+    }
+
+    /** @return first position at or after pos that follows a sequence of line separators, or size if there is none */
+    private static long lineStart(FileChannel channel, long pos, long size) throws IOException {
+        RegionInput src;
+        int c;
+        boolean separator;
+
+        if (pos >= size) {
+            return size;
+        }
+        src = new RegionInput(channel, pos - 1, size);
+        separator = false;
+        while (true) {
+            c = src.read();
+            if (c == -1) {
+                return size;
+            }
+            if (c == '\n' || c == '\r') {
+                separator = true;
+            } else if (separator) {
+                return src.position() - 1;
+            }
+        }
+    }
+
+    private Scan scan(FileChannel channel, long from, long to) throws IOException {
+        RegionInput src;
+        QuoteScanner closed;
+        QuoteScanner open;
+        long pos;
+        int c;
+        Scan result;
+
+        src = new RegionInput(channel, from, to);
+        closed = new QuoteScanner(format, false);
+        open = new QuoteScanner(format, true);
+        pos = from;
+        while (true) {
+            c = src.read();
+            if (c == -1) {
+                break;
+            }
+            closed.feed((byte) c, pos);
+            open.feed((byte) c, pos);
+            pos++;
+        }
+        closed.finish(to);
+        open.finish(to);
+        result = new Scan();
+        result.open[0] = closed.open;
+        result.open[1] = open.open;
+        result.record = open.record;
+        result.recordLines = open.recordLines;
+        result.lines = closed.lines;
+        return result;
+    }
+
+    //-- second pass
+
+    private String parse(final String name, final FileChannel channel, final Charset charset, List<Range> ranges,
+                         final Sink sink, final boolean ordered) throws IOException {
+        List<Callable<Chunk>> tasks;
+        List<Chunk> chunks;
+        List<Future<Chunk>> futures;
+        Chunk chunk;
+        int max;
+        StringBuilder errors;
+
+        tasks = new ArrayList<>(ranges.size());
+        for (final Range range : ranges) {
+            tasks.add(new Callable<Chunk>() {
+                @Override
+                public Chunk call() throws IOException {
+                    return chunk(name, channel, charset, range, ordered ? null : sink);
+                }
+            });
+        }
+        if (ordered) {
+            // bounded number of parsed chunks in memory
+            max = Math.max(2, pool.getParallelism() * 2);
+            futures = new ArrayList<>(tasks.size());
+            chunks = new ArrayList<>(tasks.size());
+            try {
+                for (int i = 0; i < tasks.size(); i++) {
+                    while (futures.size() < tasks.size() && futures.size() < i + max) {
+                        futures.addAll(submit(tasks.subList(futures.size(), futures.size() + 1)));
+                    }
+                    chunk = all(futures.subList(i, i + 1)).get(0);
+                    for (Line line : chunk.lines) {
+                        sink.add(line);
+                    }
+                    chunk.lines = null;
+                    chunks.add(chunk);
+                }
+            } catch (IOException | RuntimeException e) {
+                Futures.cancelAll(futures);
+                throw e;
+            }
+        } else {
+            chunks = all(submit(tasks));
+        }
+        errors = new StringBuilder();
+        for (Chunk done : chunks) {
+            if (!done.errors.isEmpty()) {
+                if (errors.length() > 0) {
+                    errors.append('\n');
+                }
+                errors.append(done.errors);
+            }
+        }
+        return errors.toString();
+    }
+
+    /** @param sink null to collect lines in the result */
+    private Chunk chunk(String name, FileChannel channel, Charset charset, Range range, Sink sink) throws IOException {
+        Chunk result;
+        Line line;
+
+        result = new Chunk();
+        try (CsvReader reader = new CsvReader(format,
+                new InputStreamReader(new RegionInput(channel, range.start, range.end), charset), name, range.lines)) {
+            while (true) {
+                try {
+                    line = reader.next();
+                } catch (CsvExceptions e) {
+                    result.errors = e.getMessage();
+                    break;
+                }
+                if (line == null) {
+                    break;
+                }
+                if (sink == null) {
+                    result.lines.add(line);
+                } else {
+                    sink.add(line);
+                }
+            }
+        }
+        return result;
+    }
+
+    //--
+
+    private <T> List<Future<T>> submit(List<Callable<T>> tasks) throws IOException {
+        try {
+            return Futures.submitAll(pool, tasks);
+        } catch (RejectedExecutionException e) {
+            throw new IOException("pool rejected csv chunk", e);
+        }
+    }
+
+    private static <T> List<T> all(List<Future<T>> futures) throws IOException {
+        try {
+            return Futures.getAll(futures, IOException.class);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        }
+    }
+
+    //--
+
+    private static class Range {
+        public final long start;
+        public long end;
+        /** number of lines before start */
+        public final int lines;
+
+        public Range(long start, long end, int lines) {
+            this.start = start;
+            this.end = end;
+            this.lines = lines;
+        }
+    }
+
+    private static class Scan {
+        /** quote state at the end of the range, if the range starts outside [0] or inside [1] quotes */
+        public final boolean[] open = new boolean[2];
+        /** if the range starts inside quotes: position of the first record, or -1 */
+        public long record;
+        public int recordLines;
+        public int lines;
+    }
+
+    private static class Chunk {
+        public List<Line> lines = new ArrayList<>();
+        public String errors = "";
+    }
+
+    /** Format.quoteOpen and line separator detection on bytes, at the same time */
+    private static class QuoteScanner {
+        private final byte quote;
+        private final byte escape;
+        private final byte separator;
+
+        public boolean open;
+        private boolean start;
+        private boolean escaped;
+        /** open and a quote was seen; closes the cell unless followed by another quote */
+        private boolean quoted;
+        /** first character of a line separator, or 0 */
+        private byte newline;
+
+        public int lines;
+        /** position of the first line after a record has been completed, or -1 */
+        public long record;
+        public int recordLines;
+
+        public QuoteScanner(Format format, boolean open) {
+            this.quote = (byte) format.quote;
+            this.escape = (byte) format.escape;
+            this.separator = (byte) format.separator;
+            this.open = open;
+            this.start = !open;
+            this.escaped = false;
+            this.quoted = false;
+            this.newline = 0;
+            this.lines = 0;
+            this.record = open ? -1 : 0;
+            this.recordLines = 0;
+        }
+
+        public void feed(byte c, long pos) {
+            if (c == '\n' || c == '\r') {
+                escaped = false;
+                if (quoted) {
+                    quoted = false;
+                    open = false;
+                }
+                if (newline == 0) {
+                    newline = c;
+                } else if (newline != c) {
+                    // two-character separator
+                    newline = 0;
+                    lineEnd(pos + 1);
+                } else {
+                    lineEnd(pos);
+                }
+                return;
+            }
+            if (newline != 0) {
+                newline = 0;
+                lineEnd(pos);
+            }
+            if (escaped) {
+                escaped = false;
+                return;
+            }
+            if (quoted) {
+                quoted = false;
+                if (c == quote) {
+                    return;
+                }
+                open = false;
+            }
+            if (c == escape) {
+                escaped = true;
+                start = false;
+            } else if (open) {
+                if (c == quote) {
+                    quoted = true;
+                }
+            } else if (c == separator) {
+                start = true;
+            } else {
+                open = start && c == quote;
+                start = false;
+            }
+        }
+
+        public void finish(long end) {
+            if (newline != 0) {
+                newline = 0;
+                lineEnd(end);
+            }
+            if (quoted) {
+                quoted = false;
+                open = false;
+            }
+        }
+
+        private void lineEnd(long pos) {
+            lines++;
+            if (!open) {
+                start = true;
+                if (record == -1) {
+                    record = pos;
+                    recordLines = lines;
+                }
+            }
+        }
+    }
+
+    /** Reads a range of a channel with positional reads; the channel may be shared between threads. */
+    private static class RegionInput extends InputStream {
+        private final FileChannel channel;
+        private long position;
+        private final long end;
+        private final ByteBuffer buffer;
+
+        public RegionInput(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+            this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            this.buffer.limit(0);
+        }
+
+        /** @return position of the next byte to be read */
+        public long position() {
+            return position - buffer.remaining();
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!buffer.hasRemaining() && !fill()) {
+                return -1;
+            }
+            return buffer.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] dest, int ofs, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining() && !fill()) {
+                return -1;
+            }
+            len = Math.min(len, buffer.remaining());
+            buffer.get(dest, ofs, len);
+            return len;
+        }
+
+        private boolean fill() throws IOException {
+            int count;
+
+            if (position >= end) {
+                return false;
+            }
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            count = channel.read(buffer, position);
+            if (count <= 0) {
+                return false;
+            }
+            position += count;
+            buffer.flip();
+            return true;
+        }
+    }
+}
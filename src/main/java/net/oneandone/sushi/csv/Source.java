@@ -15,6 +15,10 @@
  */
 package net.oneandone.sushi.csv;
 
+/**
+ * @deprecated no longer used by the parser; use {@link Cells} to scan lines.
+ */
+@Deprecated
 public class Source {
     public static final int END = -1;
     
@@ -16,17 +16,35 @@
 package net.oneandone.sushi.fs;
 
 import net.oneandone.sushi.fs.filter.Filter;
+import net.oneandone.sushi.fs.filter.PathMatcher;
 import net.oneandone.sushi.fs.filter.Tree;
 import net.oneandone.sushi.fs.filter.TreeAction;
+import net.oneandone.sushi.util.Futures;
+import net.oneandone.sushi.util.Strings;
 import net.oneandone.sushi.util.Substitution;
+import net.oneandone.sushi.util.SubstitutionException;
 
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Method;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /** Copy configuration and command. */
 public class Copy {
@@ -34,6 +52,9 @@ public class Copy {
     public static final char DEFAULT_CALL_PREFIX = '@';
     public static final Substitution DEFAULT_SUBST = new Substitution("${{", "}}", '\\');
     
+    /** makes temp file names for substitution unique, also across Copy instances running in parallel */
+    private static final AtomicInteger TMP_COUNTER = new AtomicInteger();
+
     private static final String CONTEXT = "context";
     private static final String CALL = "call";
     
@@ -52,9 +73,21 @@ public class Copy {
     private final Map<String, String> rootVariables;
     
     private final char contextDelimiter;
-    private final Map<Character, Method> contextConstructors;
+    private final Map<Character, Handler> contextConstructors;
     private final char callPrefix;
-    private final Map<String, Method> calls;
+    private final Map<String, Handler> calls;
+
+    /** null to copy files sequentially */
+    private ExecutorService executor;
+
+    private boolean incremental;
+
+    /** null for none */
+    private Node manifest;
+
+    /** statistics of the last directory call */
+    private final AtomicInteger copied;
+    private final AtomicInteger skipped;
     
 	public Copy(Node srcdir) {
 		this(srcdir, srcdir.getWorld().filter().includeAll());
@@ -91,6 +124,8 @@ public class Copy {
 
     public Copy(Node srcdir, Filter filter, Filter binary,
                 boolean permissions, Map<String, String> variables, Substitution path, Substitution content, char contextDelimiter, char callPrefix) {
+        Reflection reflection;
+
 	    this.sourcedir = srcdir;
         this.filter = filter;
         this.binary = binary;
@@ -99,29 +134,108 @@ public class Copy {
 		this.content = content;
 		this.rootVariables = variables;
 		this.contextDelimiter = contextDelimiter;
-        this.contextConstructors = new HashMap<>();
         this.callPrefix = callPrefix;
-        this.calls = new HashMap<>();
-        if (!getClass().equals(Copy.class)) {
-            initReflection();
+        this.executor = null;
+        this.incremental = false;
+        this.manifest = null;
+        this.copied = new AtomicInteger();
+        this.skipped = new AtomicInteger();
+        if (getClass().equals(Copy.class)) {
+            this.contextConstructors = Collections.emptyMap();
+            this.calls = Collections.emptyMap();
+        } else {
+            reflection = REFLECTION.get(getClass());
+            this.contextConstructors = reflection.contextConstructors;
+            this.calls = reflection.calls;
         }
     }
-    
-    private void initReflection() {
-        String name;
-        char c;
-        
-        for (Method m : getClass().getDeclaredMethods()) {
-            name = m.getName();
-            if (name.startsWith(CONTEXT)) {
-                c = Character.toUpperCase(name.substring(CONTEXT.length()).charAt(0));                
-                if (contextConstructors.put(c, m) != null) {
-                    throw new IllegalArgumentException("duplicate context character: " + c);
+
+    //-- reflection: context and call methods of subclasses are resolved once per class
+
+    private static final ClassValue<Reflection> REFLECTION = new ClassValue<Reflection>() {
+        @Override
+        protected Reflection computeValue(Class<?> type) {
+            return new Reflection(type);
+        }
+    };
+
+    private static class Reflection {
+        public final Map<Character, Handler> contextConstructors;
+        public final Map<String, Handler> calls;
+
+        public Reflection(Class<?> type) {
+            Map<Character, Handler> contexts;
+            Map<String, Handler> callMap;
+            String name;
+            char c;
+
+            contexts = new HashMap<>();
+            callMap = new HashMap<>();
+            for (Method m : type.getDeclaredMethods()) {
+                name = m.getName();
+                if (name.startsWith(CONTEXT)) {
+                    c = Character.toUpperCase(name.substring(CONTEXT.length()).charAt(0));
+                    if (contexts.put(c, new Handler(m)) != null) {
+                        throw new IllegalArgumentException("duplicate context character: " + c);
+                    }
+                } else if (name.startsWith(CALL)) {
+                    name = name.substring(CALL.length()).toLowerCase();
+                    if (callMap.put(name, new Handler(m)) != null) {
+                        throw new IllegalArgumentException("duplicate call: " + name);
+                    }
                 }
-            } else if (name.startsWith(CALL)) {
-                name = name.substring(CALL.length()).toLowerCase();
-                if (calls.put(name, m) != null) {
-                    throw new IllegalArgumentException("duplicate call: " + name);
+            }
+            this.contextConstructors = Collections.unmodifiableMap(contexts);
+            this.calls = Collections.unmodifiableMap(callMap);
+        }
+    }
+
+    /** A context or call method, invoked via a method handle that takes the Copy instance and an argument array. */
+    private static class Handler {
+        public final String name;
+        private final Class<?>[] parameters;
+        /** null if the method is not accessible */
+        private final MethodHandle handle;
+        private final IllegalAccessException inaccessible;
+
+        public Handler(Method method) {
+            MethodHandle unreflected;
+            MethodHandle h;
+            IllegalAccessException e;
+
+            this.name = method.getName();
+            this.parameters = method.getParameterTypes();
+            try {
+                unreflected = MethodHandles.lookup().unreflect(method);
+                h = unreflected.asType(unreflected.type().generic()).asSpreader(Object[].class, parameters.length);
+                e = null;
+            } catch (IllegalAccessException cause) {
+                h = null;
+                e = cause;
+            }
+            this.handle = h;
+            this.inaccessible = e;
+        }
+
+        public Object invoke(Copy copy, Object ... args) throws ReflectionException {
+            if (handle == null) {
+                throw new IllegalStateException(inaccessible);
+            }
+            checkArguments(args);
+            try {
+                return (Object) handle.invokeExact((Object) copy, args);
+            } catch (Throwable e) {
+                throw new ReflectionException(name + " failed: " + e.getMessage(), e);
+            }
+        }
+
+        private void checkArguments(Object[] args) {
+            if (args.length != parameters.length) {
+                throw new IllegalArgumentException(name + ": wrong number of arguments: " + args.length);
+            }
+            for (int i = 0; i < args.length; i++) {
+                if (parameters[i].isPrimitive() ? args[i] == null : args[i] != null && !parameters[i].isInstance(args[i])) {
+                    throw new IllegalArgumentException(name + ": argument type mismatch: " + args[i]);
                 }
             }
         }
@@ -130,14 +244,75 @@ public class Copy {
 	public Node getSourceDir() {
 	    return sourcedir;
 	}
+
+    /**
+     * Copy files concurrently with the specified executor. Directories and calls are still processed by the invoking thread,
+     * before any file is copied. The executor is not shut down.
+     *
+     * @param executor null to copy files sequentially
+     */
+    public Copy parallel(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Skip files with an up-to-date destination: plain files are compared by length and last modified (equal in seconds;
+     * copied files get the last modified of their source, if the destination file system supports it), substituted files
+     * by the digest of the substituted content. Substituted files are written to a temp file once to compute the digest.
+     * With a manifest, plain files are compared by digest as well.
+     */
+    public Copy incremental(boolean incremental) {
+        this.incremental = incremental;
+        return this;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Stores digests of the files copied into a directory, so incremental copies don't have to read destination files to
+     * check them. Entries are ignored if length or last modified of the destination file changed.
+     *
+     * @param manifest null for none. The file does not have to exist; a local file is a good choice for remote destinations.
+     */
+    public Copy manifest(Node manifest) {
+        this.manifest = manifest;
+        return this;
+    }
+
+    public Node getManifest() {
+        return manifest;
+    }
+
+    /** @return number of files written by the last directory call */
+    public int getCopied() {
+        return copied.get();
+    }
+
+    /** @return number of files skipped by the last directory call because they were up-to-date */
+    public int getSkipped() {
+        return skipped.get();
+    }
 	
-	/** @return Target files or directories created. */
+	/** @return Target files or directories created, in tree order - also in parallel mode. */
 	public List<Node> directory(Node destdir) throws CopyException {
         List<Node> result;
         TreeAction action;
         Tree tree;
-        
+        List<FileTask> tasks;
+        Manifest digests;
+        PathMatcher binaryMatcher;
+
         result = new ArrayList<>();
+        copied.set(0);
+        skipped.set(0);
+        binaryMatcher = content == null ? null : binary.compileMatcher();
         try {
             sourcedir.checkDirectory();
             destdir.checkDirectory();
@@ -145,17 +320,39 @@ public class Copy {
             filter.invoke(sourcedir, action);
         } catch (IOException e) {
             throw new CopyException(sourcedir, destdir, "scanning source files failed", e);
+        }
+        try {
+            digests = manifest == null ? null : Manifest.load(manifest, destdir);
+        } catch (IOException e) {
+            throw new CopyException(sourcedir, destdir, "reading manifest failed", e);
         }
 		tree = action.getResult();
+        tasks = executor == null ? null : new ArrayList<FileTask>();
 		if (tree != null) {
 		    for (Tree child : tree.children) {
-		        copy(sourcedir, destdir, child, result, rootVariables);
+		        copy(sourcedir, destdir, child, result, rootVariables, tasks, digests, binaryMatcher);
 		    }
 		}
+        if (tasks != null) {
+            runAll(destdir, tasks);
+        }
+        if (digests != null) {
+            try {
+                digests.save();
+            } catch (IOException e) {
+                throw new CopyException(sourcedir, destdir, "writing manifest failed", e);
+            }
+        }
 		return result;
 	}
-	
-	private void copy(Node srcParent, Node destParent, Tree src, List<Node> result, Map<String, String> parentVariables) throws CopyException {
+
+    /**
+     * @param tasks null to copy files immediately; otherwise, file copying is added to this list
+     * @param digests null if there's no manifest
+     * @param binaryMatcher compiled binary filter, null if there is no content substitution
+     */
+	private void copy(Node srcParent, Node destParent, Tree src, List<Node> result, Map<String, String> parentVariables,
+                      List<FileTask> tasks, Manifest digests, PathMatcher binaryMatcher) throws CopyException {
 	    String name;
         Node dest;
         List<Map<String, String>> childVariablesList;
@@ -174,20 +371,20 @@ public class Copy {
                     dest = destParent.join(path == null ? name : path.apply(name, childVariables));
                     if (isDir) {
                         dest.mkdirsOpt();
+                        if (permissions) {
+                            dest.setPermissions(src.node.getPermissions());
+                        }
                     } else {
                         dest.getParent().mkdirsOpt();
-                        if (content == null || binary.matches(src.node.getRelative(sourcedir))) {
-                            src.node.copyFile(dest);
+                        if (tasks == null) {
+                            copyFile(src.node, dest, childVariables, digests, binaryMatcher);
                         } else {
-                            dest.writeString(content.apply(src.node.readString(), childVariables));
+                            tasks.add(new FileTask(src.node, dest, childVariables, digests, binaryMatcher));
                         }
                     }
-                    if (permissions) {
-                        dest.setPermissions(src.node.getPermissions());
-                    }
                     result.add(dest);
                     for (Tree child : src.children) {
-                        copy(src.node, dest, child, result, childVariables);
+                        copy(src.node, dest, child, result, childVariables, tasks, digests, binaryMatcher);
                     }
                 }
             }
@@ -201,10 +398,240 @@ public class Copy {
         }
 	}
 
+    private void copyFile(Node src, Node dest, Map<String, String> variables, Manifest digests, PathMatcher binaryMatcher)
+            throws IOException, SubstitutionException {
+        boolean substitute;
+        Node tmp;
+        String digest;
+
+        substitute = content != null && !binaryMatcher.matches(src.getRelative(sourcedir));
+        if (substitute) {
+            // substitute into a sibling temp file that replaces dest on success: dest is left untouched if substitution
+            // fails or if dest turns out to be up-to-date
+            tmp = dest.getParent().join("." + dest.getName() + "." + TMP_COUNTER.incrementAndGet() + ".tmp");
+            try {
+                digest = substitute(src, tmp, variables);
+                if (incremental && dest.isFile() && upToDate(src, dest, digest, digests)) {
+                    tmp.deleteFile();
+                    skip(src, dest);
+                    return;
+                }
+                tmp.move(dest, true);
+            } catch (IOException | SubstitutionException | RuntimeException e) {
+                try {
+                    tmp.deleteFileOpt();
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+        } else {
+            digest = digests == null ? null : src.md5();
+            if (incremental && dest.isFile() && upToDate(src, dest, digest, digests)) {
+                skip(src, dest);
+                return;
+            }
+            src.copyFile(dest);
+            if (incremental) {
+                keepLastModified(src, dest);
+            }
+        }
+        if (permissions) {
+            dest.setPermissions(src.getPermissions());
+        }
+        if (digests != null) {
+            digests.put(dest, digest);
+        }
+        copied.incrementAndGet();
+    }
+
+    private void skip(Node src, Node dest) throws IOException {
+        String mode;
+
+        if (permissions) {
+            mode = src.getPermissions();
+            if (!mode.equals(dest.getPermissions())) {
+                dest.setPermissions(mode);
+            }
+        }
+        skipped.incrementAndGet();
+    }
+
+    /**
+     * Gives dest the last modified of src, so the next incremental copy can compare them for equality. Destinations that
+     * cannot set it (e.g. webdav) keep their own last modified and are always copied again.
+     */
+    private static void keepLastModified(Node src, Node dest) throws IOException {
+        try {
+            dest.setLastModified(src.getLastModified());
+        } catch (SetLastModifiedException e) {
+            // fall through - never up-to-date
+        }
+    }
+
+    /** @param digest null to compare length and last modified */
+    private static boolean upToDate(Node src, Node dest, String digest, Manifest digests) throws IOException {
+        if (digest == null) {
+            // seconds, because ssh and webdav do not store millis
+            return src.length() == dest.length() && src.getLastModified() / 1000 == dest.getLastModified() / 1000;
+        } else {
+            return digest.equals(digests == null ? dest.md5() : digests.get(dest));
+        }
+    }
+
+    /** @return md5 of the substituted content as written to dest */
+    private String substitute(Node src, Node dest, Map<String, String> variables) throws IOException, SubstitutionException {
+        MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (Reader reader = src.createReader();
+             Writer writer = new NodeWriter(dest, new DigestOutputStream(dest.createOutputStream(), digest),
+                     dest.getWorld().getSettings().encoding)) {
+            content.apply(reader, writer, variables);
+        }
+        return Strings.toHex(digest.digest());
+    }
+
+    /** Runs all tasks on the executor and waits until they are done. Failures are reported with a single exception. */
+    private void runAll(Node destdir, List<FileTask> tasks) throws CopyException {
+        List<Future<Void>> futures;
+        Throwable[] others;
+        CopyException result;
+
+        try {
+            futures = Futures.submitAll(executor, tasks);
+        } catch (RejectedExecutionException e) {
+            throw new CopyException(sourcedir, destdir, "executor rejected file copy", e);
+        }
+        try {
+            Futures.getAll(futures, CopyException.class);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CopyException(sourcedir, destdir, "interrupted", e);
+        } catch (CopyException e) {
+            others = e.getSuppressed();
+            if (others.length == 0) {
+                throw e;
+            }
+            result = new CopyException(sourcedir, destdir, (others.length + 1) + " files failed, first: "
+                    + e.getMessage(), e);
+            for (Throwable other : others) {
+                result.addSuppressed(other);
+            }
+            throw result;
+        }
+    }
+
+    private class FileTask implements Callable<Void> {
+        private final Node src;
+        private final Node dest;
+        private final Map<String, String> variables;
+        private final Manifest digests;
+        private final PathMatcher binaryMatcher;
+
+        public FileTask(Node src, Node dest, Map<String, String> variables, Manifest digests, PathMatcher binaryMatcher) {
+            this.src = src;
+            this.dest = dest;
+            this.variables = variables;
+            this.digests = digests;
+            this.binaryMatcher = binaryMatcher;
+        }
+
+        @Override
+        public Void call() throws CopyException {
+            try {
+                copyFile(src, dest, variables, digests, binaryMatcher);
+            } catch (IOException | SubstitutionException e) {
+                throw new CopyException(src, dest, e);
+            }
+            return null;
+        }
+    }
+
+    /** Digests of destination files, keyed by path relative to the destination directory. Thread-safe. */
+    private static class Manifest {
+        public static Manifest load(Node file, Node destdir) throws IOException {
+            Manifest result;
+            String[] fields;
+
+            result = new Manifest(file, destdir);
+            if (file.exists()) {
+                for (String line : file.readLines()) {
+                    fields = line.split(" ", 4);
+                    if (fields.length != 4) {
+                        throw new IOException(file + ": invalid manifest line: " + line);
+                    }
+                    try {
+                        result.entries.put(fields[3], new Entry(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2])));
+                    } catch (NumberFormatException e) {
+                        throw new IOException(file + ": invalid manifest line: " + line, e);
+                    }
+                }
+            }
+            return result;
+        }
+
+        private final Node file;
+        private final Node destdir;
+        private final Map<String, Entry> entries;
+
+        public Manifest(Node file, Node destdir) {
+            this.file = file;
+            this.destdir = destdir;
+            this.entries = new ConcurrentHashMap<>();
+        }
+
+        /** @return digest of the destination file, computed from the file content if the manifest entry is outdated */
+        public String get(Node dest) throws IOException {
+            Entry entry;
+            String digest;
+
+            entry = entries.get(dest.getRelative(destdir));
+            if (entry != null && entry.length == dest.length() && entry.lastModified == dest.getLastModified()) {
+                return entry.digest;
+            }
+            digest = dest.md5();
+            put(dest, digest);
+            return digest;
+        }
+
+        public void put(Node dest, String digest) throws IOException {
+            entries.put(dest.getRelative(destdir), new Entry(digest, dest.length(), dest.getLastModified()));
+        }
+
+        public void save() throws IOException {
+            List<String> lines;
+            Entry entry;
+
+            lines = new ArrayList<>();
+            for (String path : new TreeSet<>(entries.keySet())) {
+                entry = entries.get(path);
+                lines.add(entry.digest + " " + entry.length + " " + entry.lastModified + " " + path);
+            }
+            file.writeLines(lines);
+        }
+    }
+
+    private static class Entry {
+        public final String digest;
+        public final long length;
+        public final long lastModified;
+
+        public Entry(String digest, long length, long lastModified) {
+            this.digest = digest;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+    }
+
     private Node call(String name, Node src, Node destParent, Map<String, String> context) throws ReflectionException, IOException {
         String fileName;
         String methodName;
-        Method m;
+        Handler m;
         Node dest;
         
         fileName = name.substring(1);
@@ -240,7 +667,7 @@ public class Copy {
     private String splitContext(String name, Map<String, String> parent, List<Map<String, String>> result) throws ReflectionException {
         int idx;
         char c;
-        Method m;
+        Handler m;
         
         result.add(parent);
         if (contextDelimiter == 0) {
@@ -261,7 +688,7 @@ public class Copy {
         return name.substring(idx + 1);
     }
     
-    private void apply(Method m, List<Map<String, String>> contexts) throws ReflectionException {
+    private void apply(Handler m, List<Map<String, String>> contexts) throws ReflectionException {
         List<Map<String, String>> tmp;
         
         tmp = new ArrayList<>(contexts);
@@ -271,19 +698,11 @@ public class Copy {
         }
     }
 
-    private void context(Method m, Map<String, String> parent, List<Map<String, String>> result) throws ReflectionException {
+    private void context(Handler m, Map<String, String> parent, List<Map<String, String>> result) throws ReflectionException {
         result.addAll((List<Map<String, String>>) doInvoke(m, parent));
     }
 
-    private Object doInvoke(Method m, Object ... args) throws ReflectionException {
-        try {
-            return m.invoke(this, args);
-        } catch (InvocationTargetException e) {
-            throw new ReflectionException(m.getName() + " failed: " + e.getTargetException().getMessage(), e.getTargetException());
-        } catch (IllegalArgumentException e) {
-            throw new IllegalArgumentException(m.getName() + ": " + e.getMessage(), e);
-        } catch (IllegalAccessException e) {
-            throw new IllegalStateException(e);
-        }
+    private Object doInvoke(Handler m, Object ... args) throws ReflectionException {
+        return m.invoke(this, args);
     }
 }
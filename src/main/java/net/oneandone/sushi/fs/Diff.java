@@ -17,17 +17,27 @@ package net.oneandone.sushi.fs;
 
 import net.oneandone.sushi.fs.filter.Filter;
 import net.oneandone.sushi.io.OS;
+import net.oneandone.sushi.util.Futures;
 import net.oneandone.sushi.util.Strings;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 public class Diff {
     private final boolean brief;
 	private final String lineSeparator;
 
+    /** null to compare files sequentially */
+    private ExecutorService executor;
+
     public Diff(boolean brief) {
     	this(brief, OS.CURRENT.lineSeparator.getSeparator());
     }
@@ -35,6 +45,22 @@ public class Diff {
     public Diff(boolean brief, String lineSeparator) {
         this.brief = brief;
         this.lineSeparator = lineSeparator;
+        this.executor = null;
+    }
+
+    /**
+     * Compare files concurrently with the specified executor; the result is the same as without executor.
+     * The executor is not shut down.
+     *
+     * @param executor null to compare files sequentially
+     */
+    public Diff parallel(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
     }
 
     //-- scan directories for relevant files
@@ -47,12 +73,15 @@ public class Diff {
     	return result;
     }
 
+    /** Adds the paths found in dir that are not yet in result. */
     public void paths(Node dir, Filter filter, List<String> result) throws IOException {
+        Set<String> seen;
     	String path;
 
+        seen = new HashSet<>(result);
     	for (Node node : dir.find(filter)) {
     		path = node.getRelative(dir);
-    		if (!result.contains(path)) {
+    		if (seen.add(path)) {
     			result.add(path);
     		}
     	}
@@ -74,34 +103,76 @@ public class Diff {
 
     public String directory(Node leftdir, Node rightdir, List<String> paths) throws IOException {
         StringBuilder result;
-        Node left;
-        Node right;
 
         result = new StringBuilder();
         leftdir.checkDirectory();
         rightdir.checkDirectory();
-        for (String path : paths) {
-            left = leftdir.join(path);
-            right = rightdir.join(path);
-            if (left.isDirectory()) {
-                if (right.isDirectory()) {
-                    // ok
-                } else if (right.isFile()) {
-                    throw new IOException("TODO");
+        if (executor == null) {
+            for (String path : paths) {
+                path(leftdir, rightdir, path, result);
+            }
+        } else {
+            for (String str : pathsParallel(leftdir, rightdir, paths)) {
+                result.append(str);
+            }
+        }
+        return result.toString();
+    }
+
+    private void path(Node leftdir, Node rightdir, String path, StringBuilder result) throws IOException {
+        Node left;
+        Node right;
+
+        left = leftdir.join(path);
+        right = rightdir.join(path);
+        if (left.isDirectory()) {
+            if (right.isDirectory()) {
+                // ok
+            } else if (right.isFile()) {
+                throw new IOException("TODO");
+            } else {
+                if (brief) {
+                    header('A', path, result);
                 } else {
-                    if (brief) {
-                        header('A', path, result);
-                    } else {
-                        // TODO
-                    }
+                    // TODO
                 }
-            } else if (right.isDirectory()) {
-                header("A", path, result);
-            } else {
-                file(left, right, path, result);
             }
+        } else if (right.isDirectory()) {
+            header("A", path, result);
+        } else {
+            file(left, right, path, result);
+        }
+    }
+
+    /** @return diff of every path, in the order of paths */
+    private List<String> pathsParallel(final Node leftdir, final Node rightdir, List<String> paths) throws IOException {
+        List<Callable<String>> tasks;
+        List<Future<String>> futures;
+
+        tasks = new ArrayList<>(paths.size());
+        for (final String path : paths) {
+            tasks.add(new Callable<String>() {
+                @Override
+                public String call() throws IOException {
+                    StringBuilder builder;
+
+                    builder = new StringBuilder();
+                    path(leftdir, rightdir, path, builder);
+                    return builder.toString();
+                }
+            });
+        }
+        try {
+            futures = Futures.submitAll(executor, tasks);
+        } catch (RejectedExecutionException e) {
+            throw new IOException("executor rejected file compare", e);
+        }
+        try {
+            return Futures.getAll(futures, IOException.class);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
         }
-        return result.toString();
     }
 
     public void file(Node left, Node cmp, String relative, StringBuilder result) throws IOException {
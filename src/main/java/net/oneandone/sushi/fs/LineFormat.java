@@ -21,6 +21,7 @@ public class LineFormat {
     // order is important
     public static final Pattern GENERIC_SEPARATOR = Pattern.compile(Pattern.quote("\n\r") + "|" + Pattern.quote("\r\n")  + "|" + Pattern.quote("\n") + "|" + Pattern.quote("\r"));
     public static final Pattern LF_SEPARATOR = Pattern.compile(Pattern.quote("\n"));
+    public static final Pattern CRLF_SEPARATOR = Pattern.compile(Pattern.quote("\r\n"));
 
     /** how to trim lines before they are returned by next() */
     public static enum Trim {
@@ -77,4 +78,22 @@ public class LineFormat {
         this.trim = trim;
         this.excludes = excludes;
     }
+
+    /** @return the separator string if the separator pattern is a quoted literal (like LF_SEPARATOR), null otherwise */
+    public String literalSeparator() {
+        String pattern;
+        String str;
+
+        if (separator.flags() != 0) {
+            return null;
+        }
+        pattern = separator.pattern();
+        if (pattern.startsWith("\\Q") && pattern.endsWith("\\E")) {
+            str = pattern.substring(2, pattern.length() - 2);
+            if (!str.isEmpty() && !str.contains("\\E")) {
+                return str;
+            }
+        }
+        return null;
+    }
 }
@@ -21,7 +21,10 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Matcher;
 
-/** Reads a node line-by-line. In some sense, this class is similar to Buffer, but operates on chars. */
+/**
+ * Reads a node line-by-line. In some sense, this class is similar to Buffer, but operates on chars. Literal separators
+ * (like LF or CRLF) and the generic separator are found by scanning the chars directly; other separators use a regex.
+ */
 public class LineReader implements AutoCloseable {
     public static final int INITIAL_BUFFER_SIZE = 256;
 
@@ -35,6 +38,22 @@ public class LineReader implements AutoCloseable {
 
     private final CharArraySequence buffer;
 
+    /** not null if the separator is a literal string */
+    private final String literal;
+    private final boolean generic;
+    /** null if the separator is a literal or generic */
+    private final Matcher separator;
+    /** null if format.excludes is NO_EXCLUDES */
+    private final Matcher excludes;
+
+    /** the line found by the last advance() call, valid until the next call */
+    private final CharArraySequence view;
+
+    /** index in buffer.chars where searching for the next separator continues */
+    private int scan;
+    private int separatorLength;
+    private boolean eof;
+
     public LineReader(Reader reader, LineFormat format) {
         this(reader, format, INITIAL_BUFFER_SIZE);
     }
@@ -44,6 +63,14 @@ public class LineReader implements AutoCloseable {
         this.format = format;
         this.line = 0;
         this.buffer = new CharArraySequence(0, 0, new char[initialBufferSize]);
+        this.literal = format.literalSeparator();
+        this.generic = literal == null && format.separator.pattern().equals(LineFormat.GENERIC_SEPARATOR.pattern());
+        this.separator = literal == null && !generic ? format.separator.matcher("") : null;
+        this.excludes = format.excludes == LineFormat.NO_EXCLUDES ? null : format.excludes.matcher("");
+        this.view = new CharArraySequence(0, 0, buffer.chars);
+        this.scan = 0;
+        this.separatorLength = 0;
+        this.eof = false;
     }
 
     //--
@@ -69,55 +96,136 @@ public class LineReader implements AutoCloseable {
 
     /** Never closes the underlying reader. @return next line of null for end of file */
     public String next() throws IOException {
-        String result;
-        int len;
-        Matcher matcher;
+        CharSequence result;
+
+        result = nextSequence();
+        return result == null ? null : result.toString();
+    }
 
+    /**
+     * Like next, but returns a view of the internal buffer instead of a string. The view is only valid until the next
+     * call to this reader; call toString to keep the line.
+     *
+     * @return next line of null for end of file
+     */
+    public CharSequence nextSequence() throws IOException {
         while (true) {
-            matcher = format.separator.matcher(buffer);
-            if (matcher.find()) {
-                len = matcher.end();
-                if (buffer.start + len == buffer.end) {
-                    // make sure we match the longest separator possible
-                    if (buffer.isFull()) {
-                        buffer.grow();
-                    }
-                    buffer.fill(reader);
-                    matcher = format.separator.matcher(buffer);
-                    if (!matcher.find()) {
-                        throw new IllegalStateException();
-                    }
-                    len = matcher.end();
+            if (!advance()) {
+                return null;
+            }
+            // always bump, even if we don't return the line
+            line++;
+            if (format.trim == LineFormat.Trim.ALL) {
+                while (view.start < view.end && view.chars[view.start] <= ' ') {
+                    view.start++;
                 }
-                result = new String(buffer.chars, buffer.start, format.trim == LineFormat.Trim.NOTHING ? len : matcher.start());
-                buffer.start += len;
-            } else {
-                if (buffer.isFull()) {
-                    buffer.grow();
+                while (view.end > view.start && view.chars[view.end - 1] <= ' ') {
+                    view.end--;
                 }
-                if (buffer.fill(reader)) {
-                    continue;
-                } else {
-                    if (buffer.isEmpty()) {
-                        // EOF
-                        return null;
-                    } else {
-                        result = buffer.eat();
-                    }
+            }
+            if (excludes == null || !excludes.reset(view).matches()) {
+                return view;
+            }
+        }
+    }
+
+    /** Points the view to the next line, including the separator if the format does not trim. @return false for end of file */
+    private boolean advance() throws IOException {
+        int idx;
+        int old;
+
+        while (true) {
+            idx = find();
+            if (idx != -1) {
+                view.chars = buffer.chars;
+                view.start = buffer.start;
+                view.end = format.trim == LineFormat.Trim.NOTHING ? idx + separatorLength : idx;
+                buffer.start = idx + separatorLength;
+                scan = buffer.start;
+                return true;
+            }
+            if (eof) {
+                if (buffer.isEmpty()) {
+                    return false;
                 }
+                view.chars = buffer.chars;
+                view.start = buffer.start;
+                view.end = buffer.end;
+                buffer.start = buffer.end;
+                scan = buffer.start;
+                return true;
+            }
+            if (buffer.isFull()) {
+                old = buffer.start;
+                buffer.grow();
+                scan -= old - buffer.start;
+            }
+            if (!buffer.fill(reader)) {
+                eof = true;
             }
+        }
+    }
 
-            // always bump, even if we don't return the line 
-            line++;
-            if (format.trim == LineFormat.Trim.ALL) {
-                result = result.trim();
+    /**
+     * Searches the buffer for the next separator, preferring the longest one if separators may overlap.
+     *
+     * @return index in buffer.chars, -1 if no separator was found or more chars are needed to decide
+     */
+    private int find() {
+        char[] chars;
+        int end;
+        char c;
+        char first;
+        int max;
+
+        chars = buffer.chars;
+        end = buffer.end;
+        if (literal != null) {
+            first = literal.charAt(0);
+            max = end - literal.length();
+            for (int i = scan; i <= max; i++) {
+                if (chars[i] == first && matchesLiteral(chars, i)) {
+                    separatorLength = literal.length();
+                    return i;
+                }
             }
-            if (!format.excludes.matcher(result).matches()) {
-                return result;
+            scan = Math.max(scan, max + 1);
+            return -1;
+        } else if (generic) {
+            for (int i = scan; i < end; i++) {
+                c = chars[i];
+                if (c == '\n' || c == '\r') {
+                    if (i + 1 == end && !eof) {
+                        // the separator might continue
+                        scan = i;
+                        return -1;
+                    }
+                    separatorLength = i + 1 < end && chars[i + 1] == (c == '\n' ? '\r' : '\n') ? 2 : 1;
+                    return i;
+                }
+            }
+            scan = end;
+            return -1;
+        } else {
+            separator.reset(buffer);
+            if (!separator.find() || (buffer.start + separator.end() == end && !eof)) {
+                // if the separator ends at the end of the buffer, read more to match the longest separator possible
+                return -1;
             }
+            separatorLength = separator.end() - separator.start();
+            return buffer.start + separator.start();
         }
     }
 
+    private boolean matchesLiteral(char[] chars, int idx) {
+        for (int i = 1; i < literal.length(); i++) {
+            if (chars[idx + i] != literal.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public List<String> collect() throws IOException {
         return collect(new ArrayList<String>());
     }
@@ -162,6 +270,11 @@ public class LineReader implements AutoCloseable {
             return new CharArraySequence(this.start + start, this.start + end, this.chars);
         }
 
+        @Override
+        public String toString() {
+            return new String(chars, start, end - start);
+        }
+
         public boolean isEmpty() {
             return start == end;
         }
@@ -170,14 +283,6 @@ public class LineReader implements AutoCloseable {
             return end == chars.length;
         }
 
-        public String eat() {
-            String result;
-
-            result = new String(chars, start, end - start);
-            end = start;
-            return result;
-        }
-
         public void grow() {
             char[] tmp;
 
@@ -15,22 +15,21 @@
  */
 package net.oneandone.sushi.fs;
 
+import net.oneandone.sushi.fs.file.FileNode;
 import net.oneandone.sushi.fs.filter.Filter;
 import net.oneandone.sushi.io.Buffer;
+import net.oneandone.sushi.io.BufferPool;
 import net.oneandone.sushi.util.Strings;
-import net.oneandone.sushi.xml.Builder;
-import net.oneandone.sushi.xml.Serializer;
 import org.w3c.dom.Document;
-import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.sax.SAXSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
+import java.io.EOFException;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -42,6 +41,10 @@ import java.io.Serializable;
 import java.io.Writer;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.GroupPrincipal;
 import java.nio.file.attribute.UserPrincipal;
 import java.security.MessageDigest;
@@ -149,7 +152,7 @@ public abstract class Node {
             if (skip(src, skip)) {
                 return 0;
             }
-            result = getWorld().getBuffer().copy(src, dest);
+            result = getWorld().getBufferPool().copy(src, dest);
         } catch (FileNotFoundException e) {
             throw e;
         } catch (IOException e) {
@@ -206,6 +209,15 @@ public abstract class Node {
      */
     public abstract List<? extends Node> list() throws ListException, DirectoryNotFoundException;
 
+    /**
+     * Same as list, but the resulting nodes may carry a short-lived snapshot of their attributes (type, length,
+     * last modified), so traversals can inspect them without additional round trips. This default implementation
+     * simply calls list; derived classes override it if they can fetch the attributes with the listing.
+     */
+    public List<? extends Node> listWithAttributes() throws ListException, DirectoryNotFoundException {
+        return list();
+    }
+
     /**
      * Fails if the directory already exists. Features define whether is operation is atomic.
      * @return this
@@ -441,13 +453,8 @@ public abstract class Node {
      * the length first if getting the length is cheap.
      */
     public byte[] readBytes() throws IOException {
-        Buffer buffer;
-
         try (InputStream src = createInputStream()) {
-            buffer = getWorld().getBuffer();
-            synchronized (buffer) {
-                return buffer.readBytes(src);
-            }
+            return getWorld().getBufferPool().readBytes(src);
         }
     }
 
@@ -492,21 +499,22 @@ public abstract class Node {
     }
 
     public Document readXml() throws IOException, SAXException {
-        Builder builder;
-
-        builder = getWorld().getXml().getBuilder();
-        synchronized (builder) {
-            return builder.parse(this);
-        }
+        return getWorld().getXml().getBuilder().parse(this);
     }
 
+    /** @return new transformer for the stylesheet in this node; compiled stylesheets are cached by the world's Xml */
     public Transformer readXsl() throws IOException, TransformerConfigurationException {
-        Templates templates;
+        return readTemplates().newTransformer();
+    }
 
-        try (InputStream in = createInputStream()) {
-            templates = Serializer.templates(new SAXSource(new InputSource(in)));
-        }
-        return templates.newTransformer();
+    /** @return the compiled stylesheet in this node, from the world's templates cache */
+    public Templates readTemplates() throws IOException, TransformerConfigurationException {
+        return getWorld().getXml().getTemplates().get(this);
+    }
+
+    /** Transforms this node with a new transformer of the specified templates. */
+    public void xslt(Templates templates, Node dest) throws IOException, TransformerException {
+        xslt(templates.newTransformer(), dest);
     }
 
     public void xslt(Transformer transformer, Node dest) throws IOException, TransformerException {
@@ -516,6 +524,61 @@ public abstract class Node {
         }
     }
 
+    //-- random access
+
+    /**
+     * Opens a read-only channel with random access to this node.
+     *
+     * Default implementation that works for all nodes: copies the node into a temp file which is deleted when the
+     * channel is closed. Derived classes should override it if the underlying filesystem provides random access.
+     *
+     * @throws FileNotFoundException when this node is not a file
+     */
+    public SeekableByteChannel openChannel() throws IOException {
+        FileNode tmp;
+
+        tmp = getWorld().getTemp().createTempFile();
+        try (InputStream src = createInputStream()) {
+            getWorld().getBufferPool().copy(src, tmp);
+        } catch (IOException e) {
+            tmp.deleteFile();
+            throw e;
+        }
+        return FileChannel.open(tmp.toPath(), StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    /**
+     * Returns length bytes starting at offset as a read-only buffer. The buffer is backed by a memory-mapped file
+     * if openChannel returns a file channel; otherwise, the bytes are read into the heap.
+     *
+     * @throws FileNotFoundException when this node is not a file
+     */
+    public ByteBuffer map(long offset, long length) throws IOException {
+        ByteBuffer result;
+
+        try (SeekableByteChannel channel = openChannel()) {
+            checkRange(offset, length, channel.size());
+            if (channel instanceof FileChannel) {
+                return ((FileChannel) channel).map(FileChannel.MapMode.READ_ONLY, offset, length);
+            }
+            result = ByteBuffer.allocate((int) length);
+            channel.position(offset);
+            while (result.hasRemaining()) {
+                if (channel.read(result) < 0) {
+                    throw new EOFException(toString());
+                }
+            }
+            result.flip();
+            return result.asReadOnlyBuffer();
+        }
+    }
+
+    protected void checkRange(long offset, long length, long size) {
+        if (offset < 0 || length < 0 || length > Integer.MAX_VALUE || offset + length > size) {
+            throw new IllegalArgumentException(this + ": offset " + offset + ", length " + length + ", size " + size);
+        }
+    }
+
     //--
 
     public Node checkExists() throws ExistsException, NodeNotFoundException {
@@ -622,7 +685,7 @@ public abstract class Node {
      */
     public Node copyFile(Node dest) throws CopyException {
         try (InputStream in = createInputStream()) {
-            getWorld().getBuffer().copy(in, dest);
+            getWorld().getBufferPool().copy(in, dest);
             return dest;
         } catch (IOException e) {
             throw new CopyException(this, dest, e);
@@ -657,11 +720,21 @@ public abstract class Node {
 
     /** cheap diff if you only need a yes/no answer */
     public boolean diff(Node right) throws IOException {
-        return diff(right, new Buffer(getWorld().getBuffer()));
+        BufferPool pool;
+        Buffer rightBuffer;
+
+        pool = getWorld().getBufferPool();
+        rightBuffer = pool.allocate();
+        try {
+            return diff(right, rightBuffer);
+        } finally {
+            pool.free(rightBuffer);
+        }
     }
 
     /** cheap diff if you only need a yes/no answer */
     public boolean diff(Node right, Buffer rightBuffer) throws IOException {
+        BufferPool pool;
         Buffer leftBuffer;
         int leftChunk;
         int rightChunk;
@@ -669,7 +742,9 @@ public abstract class Node {
         boolean[] rightEof;
         boolean result;
 
-        leftBuffer = getWorld().getBuffer();
+        pool = getWorld().getBufferPool();
+        // chunks are compared pair-wise, so both buffers need the same size
+        leftBuffer = rightBuffer.size() == pool.getBufferSize() ? pool.allocate() : new Buffer(rightBuffer);
         try (InputStream leftSrc = createInputStream();
              InputStream rightSrc = right.createInputStream()) {
             leftEof = new boolean[] { false };
@@ -683,6 +758,10 @@ public abstract class Node {
                     break;
                 }
             } while (leftChunk > 0);
+        } finally {
+            if (leftBuffer.size() == pool.getBufferSize()) {
+                pool.free(leftBuffer);
+            }
         }
         return result;
     }
@@ -944,7 +1023,7 @@ public abstract class Node {
         try (InputStream in = createInputStream();
              OutputStream rawOut = dest.createOutputStream();
              OutputStream out = new GZIPOutputStream(rawOut)) {
-            getWorld().getBuffer().copy(in, out);
+            getWorld().getBufferPool().copy(in, out);
         }
     }
 
@@ -952,7 +1031,7 @@ public abstract class Node {
         try (InputStream rawIn = createInputStream();
              InputStream in = new GZIPInputStream(rawIn);
              OutputStream out = dest.createOutputStream()) {
-            getWorld().getBuffer().copy(in, out);
+            getWorld().getBufferPool().copy(in, out);
         }
     }
 
@@ -974,17 +1053,11 @@ public abstract class Node {
 
     public byte[] digestBytes(String name) throws IOException, NoSuchAlgorithmException {
         MessageDigest digest;
-        Buffer buffer;
 
         try (InputStream src =  createInputStream()) {
             digest = MessageDigest.getInstance(name);
-            synchronized (digest) {
-                buffer = getWorld().getBuffer();
-                synchronized (buffer) {
-                    buffer.digest(src, digest);
-                }
-                return digest.digest();
-            }
+            getWorld().getBufferPool().digest(src, digest);
+            return digest.digest();
         }
     }
 
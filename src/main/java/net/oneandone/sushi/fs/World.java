@@ -26,6 +26,7 @@ import net.oneandone.sushi.fs.ssh.SshAgentSocket;
 import net.oneandone.sushi.fs.timemachine.TimeMachineFilesystem;
 import net.oneandone.sushi.fs.zip.ZipFilesystem;
 import net.oneandone.sushi.io.Buffer;
+import net.oneandone.sushi.io.BufferPool;
 import net.oneandone.sushi.io.OS;
 import net.oneandone.sushi.util.NetRc;
 import net.oneandone.sushi.util.Reflect;
@@ -82,6 +83,9 @@ public class World {
     /** never null */
     private final Buffer buffer;
 
+    /** never null; buffers used by nodes, sized like buffer */
+    private final BufferPool bufferPool;
+
     private final Settings settings;
 
     /** never null */
@@ -114,6 +118,7 @@ public class World {
         this.os = os;
         this.settings = settings;
         this.buffer = buffer;
+        this.bufferPool = new BufferPool(buffer.size());
         this.filesystems = new HashMap<>();
         this.fileFilesystem = this.addFilesystem(new FileFilesystem(this, "file"));
         this.memoryFilesystem = this.addFilesystem(new MemoryFilesystem(this, "mem"));
@@ -156,10 +161,19 @@ public class World {
         return this;
     }
 
+    /**
+     * @deprecated this buffer is shared by all callers and thus not thread-safe; use getBufferPool() instead.
+     */
+    @Deprecated
     public Buffer getBuffer() {
         return buffer;
     }
 
+    /** Buffers for concurrent stream operations; their size is the size of the buffer passed to the constructor. */
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
     public Settings getSettings() {
         return settings;
     }
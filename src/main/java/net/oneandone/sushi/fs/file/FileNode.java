@@ -16,6 +16,7 @@
 package net.oneandone.sushi.fs.file;
 
 import net.oneandone.sushi.archive.Archive;
+import net.oneandone.sushi.fs.CopyException;
 import net.oneandone.sushi.fs.CreateInputStreamException;
 import net.oneandone.sushi.fs.CreateOutputStreamException;
 import net.oneandone.sushi.fs.DeleteException;
@@ -44,10 +45,13 @@ import net.oneandone.sushi.launcher.Failure;
 import net.oneandone.sushi.launcher.Launcher;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
@@ -56,6 +60,7 @@ import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileOwnerAttributeView;
 import java.nio.file.attribute.FileTime;
 import java.nio.file.attribute.GroupPrincipal;
@@ -68,6 +73,11 @@ import java.util.List;
 
 /**
  * <p>File, directory, symlink or something not yet created. Replacement for java.world.File.</p>
+ *
+ * <p>Nodes returned by listWithAttributes carry a snapshot of their attributes, which answers exists, isFile,
+ * isDirectory, isLink, length and getLastModified without a stat call for FileRoot.getAttributesTimeout() millis.
+ * Modifying a node through its own methods drops the snapshot; modifications through other nodes or processes are
+ * not seen until the snapshot expires.</p>
  */
 public class FileNode extends Node {
     private final FileRoot root;
@@ -75,7 +85,14 @@ public class FileNode extends Node {
     /** never null, always absolute, never ends with a slash */
     private final Path path;
 
+    /** null if unknown */
+    private volatile Snapshot attributes;
+
     public FileNode(FileRoot root, Path path) {
+        this(root, path, null);
+    }
+
+    private FileNode(FileRoot root, Path path, Snapshot attributes) {
         if (!path.isAbsolute()) {
             throw new IllegalArgumentException(path.toString());
         }
@@ -84,6 +101,7 @@ public class FileNode extends Node {
         }
         this.root = root;
         this.path = path;
+        this.attributes = attributes;
     }
 
     @Override
@@ -136,16 +154,31 @@ public class FileNode extends Node {
 
     @Override
     public boolean exists() {
+        if (snapshot() != null) {
+            return true;
+        }
         return Files.exists(path, LinkOption.NOFOLLOW_LINKS);
     }
 
     @Override
     public boolean isFile() {
+        BasicFileAttributes snapshot;
+
+        snapshot = snapshot();
+        if (snapshot != null && !snapshot.isSymbolicLink()) {
+            return snapshot.isRegularFile();
+        }
         return Files.isRegularFile(path);
     }
 
     @Override
     public boolean isDirectory() {
+        BasicFileAttributes snapshot;
+
+        snapshot = snapshot();
+        if (snapshot != null && !snapshot.isSymbolicLink()) {
+            return snapshot.isDirectory();
+        }
         return Files.isDirectory(path);
     }
 
@@ -196,6 +229,12 @@ public class FileNode extends Node {
 
     @Override
     public long length() throws LengthException {
+        BasicFileAttributes snapshot;
+
+        snapshot = snapshot();
+        if (snapshot != null && snapshot.isRegularFile()) {
+            return snapshot.size();
+        }
         try {
             checkFile();
             return Files.size(path);
@@ -206,6 +245,12 @@ public class FileNode extends Node {
 
     @Override
     public long getLastModified() throws GetLastModifiedException {
+        BasicFileAttributes snapshot;
+
+        snapshot = snapshot();
+        if (snapshot != null && !snapshot.isSymbolicLink()) {
+            return snapshot.lastModifiedTime().toMillis();
+        }
         try {
             return Files.getLastModifiedTime(path).toMillis();
         } catch (IOException e) {
@@ -215,6 +260,7 @@ public class FileNode extends Node {
 
     @Override
     public void setLastModified(long time) throws SetLastModifiedException {
+        attributes = null;
         try {
             Files.setLastModifiedTime(path, FileTime.fromMillis(time));
         } catch (IOException e) {
@@ -228,12 +274,35 @@ public class FileNode extends Node {
     /** @return null when called for a file; non-null otherwise */
     @Override
     public List<FileNode> list() throws ListException, DirectoryNotFoundException {
+        return list(false);
+    }
+
+    /** Reads the attributes of all children with one stat call each. */
+    @Override
+    public List<FileNode> listWithAttributes() throws ListException, DirectoryNotFoundException {
+        return list(true);
+    }
+
+    private List<FileNode> list(boolean withAttributes) throws ListException, DirectoryNotFoundException {
         List<FileNode> result;
+        long expires;
+        Snapshot childAttributes;
 
+        withAttributes = withAttributes && root.getAttributesTimeout() > 0;
+        expires = System.currentTimeMillis() + root.getAttributesTimeout();
         try (DirectoryStream<Path> ds = Files.newDirectoryStream(path)) {
             result = new ArrayList<>();
             for (Path child : ds) {
-                result.add(new FileNode(root, child));
+                childAttributes = null;
+                if (withAttributes) {
+                    try {
+                        childAttributes = new Snapshot(
+                                Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS), expires);
+                    } catch (IOException e) {
+                        // e.g. removed in the meantime - leave attributes unknown
+                    }
+                }
+                result.add(new FileNode(root, child, childAttributes));
             }
             return result;
         } catch (IOException e) {
@@ -263,12 +332,35 @@ public class FileNode extends Node {
         }
     }
 
+    /**
+     * Transfers bytes without passing them through the Java heap if this is a non-empty regular file and dest is a
+     * FileOutputStream; subclasses of FileOutputStream are written via their write methods.
+     */
     public long writeTo(OutputStream dest, long skip) throws FileNotFoundException, WriteToException {
-        return writeToImpl(dest, skip);
+        if (dest.getClass() != FileOutputStream.class || !transferable()) {
+            return writeToImpl(dest, skip);
+        }
+        try (FileChannel src = FileChannel.open(path, StandardOpenOption.READ)) {
+            return Buffer.transfer(src, skip, Math.max(0, src.size() - skip), ((FileOutputStream) dest).getChannel());
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(this, e);
+        } catch (IOException e) {
+            throw new WriteToException(this, e);
+        }
+    }
+
+    /** @return false for pipes, devices, files in /proc and other files that report size 0 */
+    private boolean transferable() {
+        try {
+            return Files.isRegularFile(path) && Files.size(path) > 0;
+        } catch (IOException e) {
+            return false;
+        }
     }
 
     @Override
     public OutputStream createOutputStream(boolean append) throws FileNotFoundException, CreateOutputStreamException {
+        attributes = null;
         try {
             if (append) {
                 return Files.newOutputStream(path, StandardOpenOption.APPEND, StandardOpenOption.CREATE);
@@ -292,11 +384,57 @@ public class FileNode extends Node {
         return Files.readAllBytes(path);
     }
 
+    //-- random access
+
+    @Override
+    public FileChannel openChannel() throws IOException {
+        if (isDirectory()) {
+            throw new FileNotFoundException(this);
+        }
+        try {
+            return FileChannel.open(path, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(this, e);
+        }
+    }
+
+    /** Maps the file into memory, the result does not occupy heap space. */
+    @Override
+    public MappedByteBuffer map(long offset, long length) throws IOException {
+        try (FileChannel channel = openChannel()) {
+            checkRange(offset, length, channel.size());
+            return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        }
+    }
+
+    //-- copy
+
+    /**
+     * Transfers bytes between FileNodes without passing them through the Java heap (e.g. sendfile on Linux).
+     * Other nodes, and sources that report size 0, are copied with the default implementation.
+     */
+    @Override
+    public Node copyFile(Node dest) throws CopyException {
+        if (!(dest instanceof FileNode) || !transferable()) {
+            return super.copyFile(dest);
+        }
+        ((FileNode) dest).attributes = null;
+        try (FileChannel src = FileChannel.open(path, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(((FileNode) dest).path,
+                     StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Buffer.transfer(src, 0, src.size(), out);
+        } catch (IOException e) {
+            throw new CopyException(this, dest, e);
+        }
+        return dest;
+    }
+
     //-- create
 
     /** calls createNewFile */
     @Override
     public FileNode mkfile() throws MkfileException {
+        attributes = null;
     	try {
             Files.createFile(path);
 		} catch (IOException e) {
@@ -307,6 +445,7 @@ public class FileNode extends Node {
 
     @Override
     public FileNode mkdir() throws MkdirException {
+        attributes = null;
         try {
             Files.createDirectory(path);
         } catch (IOException e) {
@@ -319,6 +458,7 @@ public class FileNode extends Node {
     public void mklink(String target) throws LinkException {
         FileNode parent;
 
+        attributes = null;
         try {
             checkNotExists();
             parent = getParent();
@@ -340,6 +480,12 @@ public class FileNode extends Node {
 
     @Override
     public boolean isLink() throws ExistsException {
+        BasicFileAttributes snapshot;
+
+        snapshot = snapshot();
+        if (snapshot != null) {
+            return snapshot.isSymbolicLink();
+        }
         return Files.isSymbolicLink(path);
     }
 
@@ -357,6 +503,8 @@ public class FileNode extends Node {
             return super.move(destNode, overwrite);
         }
         dest = (FileNode) destNode;
+        attributes = null;
+        dest.attributes = null;
         if (!overwrite) {
       	    try {
           		dest.checkNotExists();
@@ -382,6 +530,7 @@ public class FileNode extends Node {
     //-- delete
 
     public FileNode deleteFile() throws DeleteException, FileNotFoundException {
+        attributes = null;
         try {
             checkFile();
             Files.delete(path);
@@ -394,6 +543,7 @@ public class FileNode extends Node {
     }
 
     public FileNode deleteDirectory() throws DeleteException, DirectoryNotFoundException {
+        attributes = null;
         try {
             checkDirectory();
             Files.delete(path);
@@ -412,6 +562,7 @@ public class FileNode extends Node {
      */
     @Override
     public FileNode deleteTree() throws DeleteException, NodeNotFoundException {
+        attributes = null;
         if (!exists()) {
             throw new NodeNotFoundException(this);
         }
@@ -550,5 +701,33 @@ public class FileNode extends Node {
     public FileNode createTempDirectory() throws IOException {
         return OnShutdown.get().createDirectory(this);
     }
-}
 
+    //--
+
+    /** @return null if there's no snapshot or if it has expired */
+    private BasicFileAttributes snapshot() {
+        Snapshot result;
+
+        result = attributes;
+        if (result == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() >= result.expires) {
+            attributes = null;
+            return null;
+        }
+        return result.attributes;
+    }
+
+    /** Attributes read when listing the parent directory */
+    private static class Snapshot {
+        /** link attributes, i.e. links are not followed */
+        public final BasicFileAttributes attributes;
+        public final long expires;
+
+        public Snapshot(BasicFileAttributes attributes, long expires) {
+            this.attributes = attributes;
+            this.expires = expires;
+        }
+    }
+}
@@ -23,6 +23,9 @@ import java.io.File;
 
 
 public class FileRoot implements Root<FileNode> {
+    /** snapshots are opt-in: nodes might be handed out to callers that expect fresh attributes */
+    public static final long DEFAULT_ATTRIBUTES_TIMEOUT = 0;
+
     public static FileRoot create(FileFilesystem filesystem, File file) {
         return new FileRoot(filesystem, file, file.getAbsolutePath().toUpperCase(),
                 Strings.removeLeft(file.toURI().toString(), "file:").toUpperCase());
@@ -33,12 +36,14 @@ public class FileRoot implements Root<FileNode> {
     /** file.getAbsolutePath().toUpperCase() */
     private final String absolute;
     private final String id;
+    private volatile long attributesTimeout;
 
     public FileRoot(FileFilesystem filesystem, File file, String absolute, String id) {
         this.filesystem = filesystem;
         this.file = file;
         this.absolute = absolute;
         this.id = id;
+        this.attributesTimeout = DEFAULT_ATTRIBUTES_TIMEOUT;
         if (!id.endsWith(Filesystem.SEPARATOR_STRING)) {
             throw new IllegalArgumentException(id);
         }
@@ -60,6 +65,24 @@ public class FileRoot implements Root<FileNode> {
         return id;
     }
 
+    /** millis */
+    public long getAttributesTimeout() {
+        return attributesTimeout;
+    }
+
+    /**
+     * How long nodes returned by listWithAttributes may answer exists, isFile, isDirectory, isLink, length and
+     * getLastModified from the listing instead of asking the file system. This also applies to nodes found by a Filter.
+     *
+     * @param millis 0 to disable, which is the default
+     */
+    public void setAttributesTimeout(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("attributesTimeout: " + millis);
+        }
+        this.attributesTimeout = millis;
+    }
+
     public FileNode node(String path, String encodedQuery) {
         if (encodedQuery != null) {
             throw new IllegalArgumentException(encodedQuery);
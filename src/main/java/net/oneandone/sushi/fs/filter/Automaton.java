@@ -0,0 +1,394 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.sushi.fs.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Pattern;
+
+/**
+ * The compiled include and exclude paths of a filter. A state represents the includes and excludes remaining after
+ * some path prefix; states are created on demand and shared, transitions are cached per state. Thread-safe.
+ */
+class Automaton {
+    /** transition tables are used if a state has at most this many outcomes */
+    private static final int MAX_TABLE = 4096;
+
+    private final Map<Object[], Integer> ids;
+    private final Map<String, State> states;
+    public final State start;
+
+    public Automaton(List<Object[]> includes, List<Object[]> excludes) {
+        this.ids = new IdentityHashMap<>();
+        this.states = new HashMap<>();
+        this.start = state(includes, excludes);
+    }
+
+    public synchronized int size() {
+        return states.size();
+    }
+
+    private synchronized State state(List<Object[]> includes, List<Object[]> excludes) {
+        Object[][] in;
+        Object[][] ex;
+        String key;
+        State result;
+
+        in = unique(includes);
+        ex = unique(excludes);
+        key = key(in) + "|" + key(ex);
+        result = states.get(key);
+        if (result == null) {
+            result = new State(states.size(), in, ex);
+            states.put(key, result);
+        }
+        return result;
+    }
+
+    /** @return paths without duplicates, ordered by id */
+    private Object[][] unique(List<Object[]> paths) {
+        Map<Integer, Object[]> sorted;
+        Integer id;
+
+        sorted = new TreeMap<>();
+        for (Object[] path : paths) {
+            if (path == null) {
+                throw new IllegalStateException("unexpected empty path");
+            }
+            id = ids.get(path);
+            if (id == null) {
+                id = ids.size();
+                ids.put(path, id);
+            }
+            sorted.put(id, path);
+        }
+        return sorted.values().toArray(new Object[sorted.size()][]);
+    }
+
+    private String key(Object[][] paths) {
+        StringBuilder builder;
+
+        builder = new StringBuilder();
+        for (Object[] path : paths) {
+            builder.append(ids.get(path)).append(',');
+        }
+        return builder.toString();
+    }
+
+    /** Result of matching a name in a state */
+    public static class Transition {
+        /** true if the name is included and not excluded */
+        public final boolean select;
+        /** null if no include can match below this name */
+        public final State next;
+
+        public Transition(boolean select, State next) {
+            this.select = select;
+            this.next = next;
+        }
+    }
+
+    public class State {
+        public final int id;
+        private final Object[][] includes;
+        private final Object[][] excludes;
+
+        /** not null if there is exactly one include and its head is a literal name */
+        public final String literal;
+
+        /** maps literal heads to groups 1..n; 0 is for names that match no literal */
+        private final Map<String, Integer> literals;
+        /** open addressing hash table of the literal heads, to look up path segments without creating strings */
+        private final String[] slots;
+        private final int[] slotGroups;
+
+        /** distinct wildcard heads */
+        private final Pattern[] wildcards;
+        /** literal suffix of wildcards[i] that is a plain "*suffix" glob; null otherwise */
+        private final String[] suffixes;
+
+        /** indexed by group and wildcard bit mask; null if there are too many outcomes */
+        private final AtomicReferenceArray<Transition> table;
+
+        public State(int id, Object[][] includes, Object[][] excludes) {
+            List<Pattern> patterns;
+            int count;
+            int index;
+
+            this.id = id;
+            this.includes = includes;
+            this.excludes = excludes;
+            this.literal = includes.length == 1 && includes[0][0] instanceof String ? (String) includes[0][0] : null;
+            this.literals = new HashMap<>();
+            patterns = new ArrayList<>();
+            heads(includes, patterns);
+            heads(excludes, patterns);
+            this.slots = new String[Integer.highestOneBit(literals.size() * 2 + 1) * 2];
+            this.slotGroups = new int[slots.length];
+            for (Map.Entry<String, Integer> entry : literals.entrySet()) {
+                index = slot(entry.getKey(), 0, entry.getKey().length());
+                slots[index] = entry.getKey();
+                slotGroups[index] = entry.getValue();
+            }
+            this.wildcards = patterns.toArray(new Pattern[patterns.size()]);
+            this.suffixes = new String[wildcards.length];
+            for (int i = 0; i < wildcards.length; i++) {
+                suffixes[i] = suffix(wildcards[i]);
+            }
+            if (wildcards.length < 30 && (long) (literals.size() + 1) << wildcards.length <= MAX_TABLE) {
+                count = (literals.size() + 1) << wildcards.length;
+                this.table = new AtomicReferenceArray<>(count);
+            } else {
+                this.table = null;
+            }
+        }
+
+        private void heads(Object[][] paths, List<Pattern> patterns) {
+            Object head;
+
+            for (Object[] path : paths) {
+                head = path[0];
+                if (head == Glob.STARSTAR) {
+                    head = ((Object[]) path[1])[0];
+                }
+                if (head instanceof String) {
+                    if (!literals.containsKey(head)) {
+                        literals.put((String) head, literals.size() + 1);
+                    }
+                } else if (wildcard((Pattern) head, patterns) == -1) {
+                    patterns.add((Pattern) head);
+                }
+            }
+        }
+
+        public Transition step(String name) {
+            return step(name, 0, name.length());
+        }
+
+        /** Matches the path segment from start (inclusive) to end (exclusive). */
+        public Transition step(String path, int start, int end) {
+            int group;
+            int mask;
+            int index;
+            Transition result;
+            boolean[] matched;
+
+            group = slotGroups[slot(path, start, end)];
+            if (table == null) {
+                matched = new boolean[wildcards.length];
+                for (int i = 0; i < wildcards.length; i++) {
+                    matched[i] = wildcardMatches(i, path, start, end);
+                }
+                return compute(group, matched);
+            }
+            mask = 0;
+            for (int i = 0; i < wildcards.length; i++) {
+                if (wildcardMatches(i, path, start, end)) {
+                    mask |= 1 << i;
+                }
+            }
+            index = (group << wildcards.length) | mask;
+            result = table.get(index);
+            if (result == null) {
+                matched = new boolean[wildcards.length];
+                for (int i = 0; i < wildcards.length; i++) {
+                    matched[i] = (mask & (1 << i)) != 0;
+                }
+                result = compute(group, matched);
+                table.set(index, result);
+            }
+            return result;
+        }
+
+        /** @return index of the slot containing the segment, or of the empty slot where it would be stored */
+        private int slot(String path, int start, int end) {
+            int hash;
+            int mask;
+            int index;
+            int length;
+            String literal;
+
+            hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + path.charAt(i);
+            }
+            mask = slots.length - 1;
+            index = (hash ^ (hash >>> 16)) & mask;
+            length = end - start;
+            while (true) {
+                literal = slots[index];
+                if (literal == null || (literal.length() == length && path.regionMatches(start, literal, 0, length))) {
+                    return index;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+
+        private boolean wildcardMatches(int i, String path, int start, int end) {
+            Pattern pattern;
+            String suffix;
+
+            pattern = wildcards[i];
+            suffix = pattern == Glob.STAR ? "" : suffixes[i];
+            if (suffix != null && !hasLineTerminator(path, start, end)) {
+                return end - start >= suffix.length() && path.regionMatches(end - suffix.length(), suffix, 0, suffix.length());
+            }
+            if (start == 0 && end == path.length()) {
+                return Glob.matches(pattern, path);
+            } else {
+                return pattern.matcher(path).region(start, end).matches();
+            }
+        }
+
+        private Transition compute(int group, boolean[] matched) {
+            List<Object[]> remainingIncludes;
+            List<Object[]> remainingExcludes;
+            boolean in;
+            boolean ex;
+            State next;
+
+            remainingIncludes = new ArrayList<>();
+            remainingExcludes = new ArrayList<>();
+            in = doMatch(group, matched, includes, remainingIncludes);
+            ex = doMatch(group, matched, excludes, remainingExcludes);
+            if (remainingIncludes.size() > 0 && !excludesAll(remainingExcludes)) {
+                next = state(remainingIncludes, remainingExcludes);
+            } else {
+                next = null;
+            }
+            return new Transition(in && !ex, next);
+        }
+
+        private boolean doMatch(int group, boolean[] matched, Object[][] paths, List<Object[]> remainingPaths) {
+            boolean found;
+            Object head;
+            Object[] tail;
+            boolean match;
+
+            found = false;
+            for (Object[] path : paths) {
+                head = path[0];
+                tail = (Object[]) path[1];
+                if (head == Glob.STARSTAR) {
+                    remainingPaths.add(path);
+                    head = tail[0];
+                    tail = (Object[]) tail[1];
+                }
+                if (head instanceof String) {
+                    match = literals.get(head) == group;
+                } else {
+                    match = matched[wildcard((Pattern) head, Arrays.asList(wildcards))];
+                }
+                if (match) {
+                    if (tail != null) {
+                        remainingPaths.add(tail);
+                    } else {
+                        found = true;
+                    }
+                }
+            }
+            return found;
+        }
+
+        @Override
+        public String toString() {
+            return "state " + id;
+        }
+    }
+
+    //--
+
+    /** @return index of an equivalent pattern or -1 */
+    private static int wildcard(Pattern pattern, List<Pattern> patterns) {
+        Pattern p;
+
+        for (int i = 0; i < patterns.size(); i++) {
+            p = patterns.get(i);
+            if (p == pattern || (p.flags() == pattern.flags() && p.pattern().equals(pattern.pattern()))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** @return the literal suffix if the pattern was translated from a case-sensitive "*suffix" glob, null otherwise */
+    private static String suffix(Pattern pattern) {
+        String regex;
+        StringBuilder result;
+        char c;
+        int max;
+
+        if (pattern.flags() != 0) {
+            return null;
+        }
+        regex = pattern.pattern();
+        max = regex.length() - 1;
+        if (!regex.startsWith(".*") || regex.charAt(max) != '$') {
+            return null;
+        }
+        result = new StringBuilder();
+        for (int i = 2; i < max; i++) {
+            c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+                if (i == max) {
+                    return null;
+                }
+                result.append(regex.charAt(i));
+            } else if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                result.append(c);
+            } else {
+                return null;
+            }
+        }
+        return result.toString();
+    }
+
+    /** because "." in patterns does not match line terminators */
+    private static boolean hasLineTerminator(String path, int start, int end) {
+        char c;
+
+        for (int i = start; i < end; i++) {
+            c = path.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean excludesAll(Object[][] excludes) {
+        Object[] tail;
+
+        for (Object[] pair : excludes) {
+            tail = (Object[]) pair[1];
+            if (pair[0] == Glob.STARSTAR && tail[0] == Glob.STAR) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean excludesAll(List<Object[]> excludes) {
+        return excludesAll(excludes.toArray(new Object[excludes.size()][]));
+    }
+}
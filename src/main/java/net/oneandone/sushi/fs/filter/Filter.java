@@ -24,7 +24,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * <p>Similar to java.world.FileFilter or Ant File/Directory sets. A filter is basically a list of paths to
@@ -40,6 +41,10 @@ import java.util.regex.Pattern;
  * applied to a tree. Paths must not end with a separator either. </p>
  *
  * <p>Names use the familiar glob syntax. Filters do not know about extensions. </p>
+ *
+ * <p>Directories are listed with Node.listWithAttributes. If the root keeps attribute snapshots (e.g.
+ * FileRoot.setAttributesTimeout, WebdavRoot.setAttributesTimeout), the nodes found carry these snapshots, and
+ * modifications through other nodes or processes are not seen until the snapshots expire.</p>
  */
 public class Filter {
     public static final Filter NOTHING = new Filter().exclude("**/*");
@@ -64,6 +69,12 @@ public class Filter {
     private int minDepth;
     private int maxDepth;
 
+    /** null for sequential processing */
+    private ForkJoinPool pool;
+
+    /** includes and excludes compiled for matching; null if not yet compiled or outdated */
+    private Automaton automaton;
+
     public Filter() {
         this.includes = new ArrayList<>();
         this.includesRepr = new ArrayList<>();
@@ -74,6 +85,8 @@ public class Filter {
         this.followLinks = false;
         this.minDepth = 1;
         this.maxDepth = DEPTH_INFINITE;
+        this.pool = null;
+        this.automaton = null;
     }
 
     public Filter(Filter orig) {
@@ -86,6 +99,8 @@ public class Filter {
         this.followLinks = orig.followLinks;
         this.minDepth = orig.minDepth;
         this.maxDepth = orig.maxDepth;
+        this.pool = orig.pool;
+        this.automaton = orig.automaton;
     }
 
     //-- selections methods
@@ -111,6 +126,18 @@ public class Filter {
         return this;
     }
 
+    /**
+     * Lists directories, checks links and evaluates predicates concurrently in the specified pool. Actions are still
+     * invoked by the calling thread, in the same order as without a pool. Useful for filesystems where every call
+     * is a round trip (ssh, webdav). Caution: predicates have to be thread-safe, and the scanned tree is kept in memory
+     * until all directories are listed. Size the pool for blocking io, e.g. new ForkJoinPool(32). Pass null to switch
+     * back to sequential processing.
+     */
+    public Filter parallel(ForkJoinPool pool) {
+        this.pool = pool;
+        return this;
+    }
+
     public Filter predicate(Predicate p) {
         predicates.add(p);
         return this;
@@ -129,6 +156,7 @@ public class Filter {
             includes.add(compile(path));
             includesRepr.add(path);
         }
+        automaton = null;
         return this;
     }
 
@@ -148,6 +176,7 @@ public class Filter {
             excludes.add(compile(path));
             excludesRepr.add(path);
         }
+        automaton = null;
         return this;
     }
 
@@ -229,41 +258,18 @@ public class Filter {
      * Tests includes an excludes. CAUTION: does not support checks that need a node (like predicates). Ignores "followSymlinks"
      */
     public boolean matches(String path) {
-        List<String> segments;
+        return compileMatcher().matches(path);
+    }
 
-        segments = Filesystem.SEPARATOR.split(path);
-        if (segments.size() < minDepth || segments.size() > maxDepth) {
-            return false;
-        }
+    /**
+     * Compiles the current includes, excludes and depths into a thread-safe matcher; later changes to this filter
+     * do not affect it. Use it to match many paths, optionally in parallel.
+     */
+    public PathMatcher compileMatcher() {
         if (predicates.size() > 0) {
             throw new UnsupportedOperationException("cannot match with predicates");
         }
-        return matches(0, segments, new ArrayList<>(includes), new ArrayList<>(excludes));
-    }
-
-    private boolean matches(int currentSegment, List<String> segments, List<Object[]> includes, List<Object[]> excludes) {
-        List<Object[]> remainingIncludes;
-        List<Object[]> remainingExcludes;
-        String name;
-        boolean in;
-        boolean ex;
-
-        if (currentSegment >= segments.size()) {
-            return false;
-        }
-        name = segments.get(currentSegment);
-        remainingIncludes = new ArrayList<>();
-        remainingExcludes = new ArrayList<>();
-        in = doMatch(name, includes, remainingIncludes);
-        ex = doMatch(name, excludes, remainingExcludes);
-        if (in && !ex) {
-            return true;
-        }
-        if (remainingIncludes.size() > 0 && !excludesAll(remainingExcludes)) {
-            return matches(currentSegment + 1, segments, remainingIncludes, remainingExcludes);
-        } else {
-            return false;
-        }
+        return new PathMatcher(automaton(), minDepth, maxDepth);
     }
 
     /**
@@ -272,18 +278,35 @@ public class Filter {
      * @throws IOException as thrown by the specified FileTask
      */
     public void invoke(Node root, Action result) throws IOException {
-        doInvoke(0, root, root.isLink(), new ArrayList<>(includes), new ArrayList<>(excludes), result);
+        Automaton.State start;
+        Scan scan;
+
+        start = automaton().start;
+        if (pool == null) {
+            doInvoke(0, root, root.isLink(), start, result);
+        } else {
+            scan = new Scan(0, root, false, start);
+            pool.invoke(scan);
+            if (scan.failed != null) {
+                throw scan.failed;
+            }
+            scan.replay(result);
+        }
     }
 
-    private void doInvoke(int currentDepth, Node parent, boolean parentIsLink, List<Object[]> includes, List<Object[]> excludes, Action result)
+    /** @return the compiled includes and excludes; compiled states are shared with copies of this filter */
+    Automaton automaton() {
+        if (automaton == null) {
+            automaton = new Automaton(includes, excludes);
+        }
+        return automaton;
+    }
+
+    private void doInvoke(int currentDepth, Node parent, boolean parentIsLink, Automaton.State state, Action result)
     throws IOException {
         List<? extends Node> children;
-        List<Object[]> remainingIncludes;
-        List<Object[]> remainingExcludes;
-        String name;
+        Automaton.Transition transition;
         boolean childIsLink;
-        boolean in;
-        boolean ex;
 
         if (currentDepth >= maxDepth) {
             return;
@@ -292,7 +315,7 @@ public class Filter {
             return;
         }
         try {
-            children = list(parent, includes);
+            children = list(parent, state);
         } catch (IOException e) {
             result.enterFailed(parent, parentIsLink, e);
             return;
@@ -303,36 +326,112 @@ public class Filter {
             result.enter(parent, parentIsLink);
             currentDepth++;
             for (Node child : children) {
-                name = child.getName();
+                transition = state.step(child.getName());
                 childIsLink = child.isLink();
-                remainingIncludes = new ArrayList<>();
-                remainingExcludes = new ArrayList<>();
-                in = doMatch(name, includes, remainingIncludes);
-                ex = doMatch(name, excludes, remainingExcludes);
-                if (in && !ex && currentDepth >= minDepth && matchPredicates(child, childIsLink)) {
+                if (transition.select && currentDepth >= minDepth && matchPredicates(child, childIsLink)) {
                     result.select(child, childIsLink);
                 }
-                if (remainingIncludes.size() > 0 && !excludesAll(remainingExcludes)) {
-                    doInvoke(currentDepth, child, childIsLink, remainingIncludes, remainingExcludes, result);
+                if (transition.next != null) {
+                    doInvoke(currentDepth, child, childIsLink, transition.next, result);
                 }
             }
             result.leave(parent, parentIsLink);
         }
     }
 
+    /** Parallel counterpart of doInvoke: scans a node and its children, replays the result in doInvoke order. */
+    private class Scan extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int depth;
+        private final Node node;
+        private final boolean candidate;
+        /** null to not enter this node */
+        private final Automaton.State state;
+
+        /** thrown by isLink or predicates */
+        private IOException failed;
+        private boolean isLink;
+        private boolean selected;
+        private IOException listFailed;
+        /** null if node was not entered */
+        private List<Scan> children;
+
+        public Scan(int depth, Node node, boolean candidate, Automaton.State state) {
+            this.depth = depth;
+            this.node = node;
+            this.candidate = candidate;
+            this.state = state;
+        }
+
+        @Override
+        protected void compute() {
+            List<? extends Node> lst;
+            Automaton.Transition transition;
+
+            try {
+                isLink = node.isLink();
+                selected = candidate && matchPredicates(node, isLink);
+            } catch (IOException e) {
+                failed = e;
+                return;
+            }
+            if (state == null || depth >= maxDepth || (!followLinks && isLink)) {
+                return;
+            }
+            try {
+                lst = list(node, state);
+            } catch (IOException e) {
+                listFailed = e;
+                return;
+            }
+            if (lst == null) {
+                // ignore file
+                return;
+            }
+            children = new ArrayList<>(lst.size());
+            for (Node child : lst) {
+                transition = state.step(child.getName());
+                children.add(new Scan(depth + 1, child, transition.select && depth + 1 >= minDepth, transition.next));
+            }
+            invokeAll(children);
+        }
+
+        public void replay(Action result) throws IOException {
+            if (listFailed != null) {
+                result.enterFailed(node, isLink, listFailed);
+                return;
+            }
+            if (children == null) {
+                return;
+            }
+            result.enter(node, isLink);
+            for (Scan child : children) {
+                if (child.failed != null) {
+                    throw child.failed;
+                }
+                if (child.selected) {
+                    result.select(child.node, child.isLink);
+                }
+                child.replay(result);
+            }
+            result.leave(node, isLink);
+        }
+    }
+
     // avoids node.list() call if there is exactly 1 include with a literal head
-    private List<? extends Node> list(Node node, List<Object[]> includes) throws IOException {
+    private List<? extends Node> list(Node node, Automaton.State state) throws IOException {
     	Node child;
 
-    	if (includes.size() == 1 && includes.get(0)[0] instanceof String) {
-            child = node.join((String) includes.get(0)[0]);
+    	if (state.literal != null) {
+            child = node.join(state.literal);
             if (child.exists()) {
                 return Collections.singletonList(child);
             } else {
                 return Collections.emptyList();
             }
     	} else {
-        	return node.list();
+        	return node.listWithAttributes();
         }
     }
 
@@ -345,63 +444,6 @@ public class Filter {
         return true;
     }
 
-    private static boolean excludesAll(List<Object[]> excludes) {
-        int i;
-        int max;
-        Object[] pair;
-        Object[] tail;
-
-        max = excludes.size();
-        for (i = 0; i < max; i++) {
-            pair = excludes.get(i);
-            tail = (Object[]) pair[1];
-            if (pair[0] == Glob.STARSTAR && tail[0] == Glob.STAR) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private static boolean doMatch(String name, List<Object[]> paths, List<Object[]> remainingPaths) {
-        boolean found;
-        int i;
-        int max;
-        Object[] path;
-        Object head;
-        Object[] tail;
-
-        found = false;
-        max = paths.size();
-        for (i = 0; i < max; i++) {
-            path = paths.get(i);
-            if (path == null) {
-                throw new IllegalStateException("unexpected empty path");
-            }
-            head = path[0];
-            tail = (Object[]) path[1];
-            if (head == Glob.STARSTAR) {
-                remainingPaths.add(path);
-                head = tail[0];
-                tail = (Object[]) tail[1];
-            }
-            if (matches(head, name)) {
-                if (tail != null) {
-                    remainingPaths.add(tail);
-                } else {
-                    found = true;
-                }
-            }
-        }
-        return found;
-    }
-    private static boolean matches(Object stringOrPattern, String name) {
-    	if (stringOrPattern instanceof String) {
-    		return name.equals(stringOrPattern);
-    	} else {
-    		return Glob.matches((Pattern) stringOrPattern, name);
-    	}
-    }
-
     @Override
     public String toString() {
         return "includes=" + includes + ", excludes=" + excludes;
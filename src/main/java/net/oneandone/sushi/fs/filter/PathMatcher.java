@@ -0,0 +1,134 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.sushi.fs.filter;
+
+import net.oneandone.sushi.fs.Filesystem;
+
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Result of Filter.compileMatcher(): matches paths against the includes, excludes and depth restrictions of the
+ * filter at the time of compilation. Same result as Filter.matches, but segments are matched in place, without splitting
+ * the path. Thread-safe.
+ */
+public class PathMatcher {
+    /** number of paths matched by one task of the batch methods */
+    private static final int CHUNK = 4096;
+
+    private final Automaton automaton;
+    private final int minDepth;
+    private final int maxDepth;
+
+    PathMatcher(Automaton automaton, int minDepth, int maxDepth) {
+        this.automaton = automaton;
+        this.minDepth = minDepth;
+        this.maxDepth = maxDepth;
+    }
+
+    public boolean matches(String path) {
+        int length;
+        int depth;
+        int start;
+        int end;
+        Automaton.State state;
+        Automaton.Transition transition;
+
+        length = path.length();
+        if (length == 0) {
+            return false;
+        }
+        depth = 1;
+        for (int i = 0; i < length; i++) {
+            if (path.charAt(i) == Filesystem.SEPARATOR_CHAR) {
+                depth++;
+            }
+        }
+        if (depth < minDepth || depth > maxDepth) {
+            return false;
+        }
+        state = automaton.start;
+        start = 0;
+        while (start <= length) {
+            end = path.indexOf(Filesystem.SEPARATOR_CHAR, start);
+            if (end == -1) {
+                end = length;
+            }
+            transition = state.step(path, start, end);
+            if (transition.select) {
+                return true;
+            }
+            if (transition.next == null) {
+                return false;
+            }
+            state = transition.next;
+            start = end + 1;
+        }
+        return false;
+    }
+
+    /**
+     * Matches all paths; uses the specified pool for large collections, or the calling thread if pool is null.
+     *
+     * @return result[i] is the result for the i'th path in iteration order
+     */
+    public boolean[] matches(Collection<String> paths, ForkJoinPool pool) {
+        String[] array;
+        boolean[] result;
+        Batch batch;
+
+        array = paths.toArray(new String[paths.size()]);
+        result = new boolean[array.length];
+        batch = new Batch(array, 0, array.length, result);
+        if (pool == null) {
+            batch.compute();
+        } else {
+            pool.invoke(batch);
+        }
+        return result;
+    }
+
+    private class Batch extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final String[] paths;
+        private final int from;
+        private final int to;
+        private final boolean[] result;
+
+        public Batch(String[] paths, int from, int to, boolean[] result) {
+            this.paths = paths;
+            this.from = from;
+            this.to = to;
+            this.result = result;
+        }
+
+        @Override
+        protected void compute() {
+            int middle;
+
+            if (to - from <= CHUNK || getPool() == null) {
+                for (int i = from; i < to; i++) {
+                    result[i] = matches(paths[i]);
+                }
+            } else {
+                middle = (from + to) >>> 1;
+                invokeAll(new Batch(paths, from, middle, result), new Batch(paths, middle, to, result));
+            }
+        }
+    }
+}
@@ -36,6 +36,8 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.attribute.GroupPrincipal;
 import java.nio.file.attribute.UserPrincipal;
 import java.util.List;
@@ -265,6 +267,25 @@ public class MemoryNode extends Node {
         }
     }
 
+    /** The channel reads the current content without copying it. */
+    @Override
+    public SeekableByteChannel openChannel() throws IOException {
+        if (type != Type.FILE) {
+            throw new FileNotFoundException(this);
+        }
+        return root.openChannel(path);
+    }
+
+    /** Wraps the current content without copying it. */
+    @Override
+    public ByteBuffer map(long offset, long length) throws IOException {
+        if (type != Type.FILE) {
+            throw new FileNotFoundException(this);
+        }
+        checkRange(offset, length, length());
+        return root.map(path, offset, length);
+    }
+
     public long writeTo(OutputStream dest, long skip) throws WriteToException, FileNotFoundException {
         return writeToImpl(dest, skip);
     }
@@ -19,10 +19,13 @@ import net.oneandone.sushi.fs.Filesystem;
 import net.oneandone.sushi.fs.LengthException;
 import net.oneandone.sushi.fs.Root;
 import net.oneandone.sushi.fs.file.FileNode;
+import net.oneandone.sushi.io.ByteArrayChannel;
 import net.oneandone.sushi.io.CheckedByteArrayInputStream;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -111,6 +114,29 @@ public class MemoryRoot implements Root<MemoryNode> {
         }
     }
 
+    SeekableByteChannel openChannel(String path) throws IOException {
+        Object obj;
+
+        obj = store.get(path);
+        if (obj instanceof FileNode) {
+            return ((FileNode) obj).openChannel();
+        } else {
+            return new ByteArrayChannel((byte[]) obj);
+        }
+    }
+
+    /** the caller is responsible for checking the range */
+    ByteBuffer map(String path, long offset, long length) throws IOException {
+        Object obj;
+
+        obj = store.get(path);
+        if (obj instanceof FileNode) {
+            return ((FileNode) obj).map(offset, length);
+        } else {
+            return ByteBuffer.wrap((byte[]) obj, (int) offset, (int) length).slice().asReadOnlyBuffer();
+        }
+    }
+
     byte[] readBytes(String path) throws IOException {
         Object obj;
         byte[] bytes;
@@ -0,0 +1,264 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.sushi.fs.ssh;
+
+import com.jcraft.jsch.JSchException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Channels multiplexed over one session. If maxTotal is positive, at most maxTotal channels are allocated or being
+ * opened and allocate waits up to maxWait millis for a free slot; 0 means no limit. Idle channels are kept for re-use: most recently freed first, channels idle for
+ * longer than idleTimeout are disconnected, but at least minIdle channels are kept. Channels are opened and
+ * disconnected outside of the pool's lock.
+ */
+abstract class ChannelPool<T> {
+    private int maxTotal;
+    private long maxWait;
+    private int minIdle;
+    private int maxIdle;
+    private long idleTimeout;
+
+    /** oldest first */
+    private final Deque<Idle<T>> idle;
+
+    /** channels handed out or being opened, not yet freed */
+    private int allocated;
+
+    /** number of channels opened so far */
+    private int opened;
+
+    public ChannelPool(int maxTotal, long maxWait, int minIdle, int maxIdle, long idleTimeout) {
+        this.maxTotal = maxTotal;
+        this.maxWait = maxWait;
+        this.minIdle = minIdle;
+        this.maxIdle = maxIdle;
+        this.idleTimeout = idleTimeout;
+        this.idle = new ArrayDeque<>();
+        this.allocated = 0;
+        this.opened = 0;
+    }
+
+    protected abstract T open() throws JSchException;
+    protected abstract boolean isHealthy(T channel);
+    protected abstract void disconnect(T channel);
+
+    public synchronized int getMaxTotal() {
+        return maxTotal;
+    }
+
+    public void setMaxTotal(int maxTotal) {
+        if (maxTotal < 0) {
+            throw new IllegalArgumentException("maxTotal: " + maxTotal);
+        }
+        synchronized (this) {
+            this.maxTotal = maxTotal;
+            notifyAll();
+        }
+    }
+
+    public synchronized long getMaxWait() {
+        return maxWait;
+    }
+
+    public synchronized void setMaxWait(long maxWait) {
+        if (maxWait < 0) {
+            throw new IllegalArgumentException("maxWait: " + maxWait);
+        }
+        this.maxWait = maxWait;
+    }
+
+    public synchronized int getMinIdle() {
+        return minIdle;
+    }
+
+    public synchronized void setMinIdle(int minIdle) {
+        if (minIdle < 0) {
+            throw new IllegalArgumentException("minIdle: " + minIdle);
+        }
+        this.minIdle = minIdle;
+    }
+
+    public synchronized int getMaxIdle() {
+        return maxIdle;
+    }
+
+    public void setMaxIdle(int maxIdle) {
+        List<T> closing;
+
+        if (maxIdle < 0) {
+            throw new IllegalArgumentException("maxIdle: " + maxIdle);
+        }
+        closing = new ArrayList<>();
+        synchronized (this) {
+            this.maxIdle = maxIdle;
+            while (idle.size() > maxIdle) {
+                closing.add(idle.removeFirst().channel);
+            }
+        }
+        disconnectAll(closing);
+    }
+
+    public synchronized long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public synchronized void setIdleTimeout(long idleTimeout) {
+        if (idleTimeout < 0) {
+            throw new IllegalArgumentException("idleTimeout: " + idleTimeout);
+        }
+        this.idleTimeout = idleTimeout;
+    }
+
+    public synchronized int getAllocated() {
+        return allocated;
+    }
+
+    public synchronized int getIdle() {
+        return idle.size();
+    }
+
+    public synchronized int getOpened() {
+        return opened;
+    }
+
+    public T allocate() throws JSchException {
+        List<T> closing;
+        T result;
+
+        closing = new ArrayList<>();
+        try {
+            result = reserve(closing);
+        } finally {
+            disconnectAll(closing);
+        }
+        if (result != null) {
+            return result;
+        }
+        try {
+            result = open();
+        } catch (JSchException | RuntimeException e) {
+            synchronized (this) {
+                allocated--;
+                notifyAll();
+            }
+            throw e;
+        }
+        synchronized (this) {
+            opened++;
+        }
+        return result;
+    }
+
+    public void free(T channel) {
+        List<T> closing;
+        long now;
+
+        closing = new ArrayList<>();
+        now = System.currentTimeMillis();
+        synchronized (this) {
+            if (allocated == 0) {
+                throw new IllegalStateException();
+            }
+            allocated--;
+            notifyAll();
+            if (maxIdle > 0 && isHealthy(channel)) {
+                if (idle.size() >= maxIdle) {
+                    closing.add(idle.removeFirst().channel);
+                }
+                idle.addLast(new Idle<>(channel, now));
+            } else {
+                closing.add(channel);
+            }
+            evict(now, closing);
+        }
+        disconnectAll(closing);
+    }
+
+    /** disconnects all idle channels */
+    public void close() {
+        List<T> closing;
+
+        closing = new ArrayList<>();
+        synchronized (this) {
+            while (!idle.isEmpty()) {
+                closing.add(idle.removeFirst().channel);
+            }
+        }
+        disconnectAll(closing);
+    }
+
+    /** @return idle channel, or null if the caller has to open a new one */
+    private synchronized T reserve(List<T> closing) throws JSchException {
+        long now;
+        long deadline;
+        Idle<T> candidate;
+
+        now = System.currentTimeMillis();
+        deadline = now + maxWait;
+        while (true) {
+            evict(now, closing);
+            while (!idle.isEmpty()) {
+                candidate = idle.removeLast();
+                if (isHealthy(candidate.channel)) {
+                    allocated++;
+                    return candidate.channel;
+                }
+                closing.add(candidate.channel);
+            }
+            if (maxTotal == 0 || allocated < maxTotal) {
+                allocated++;
+                return null;
+            }
+            if (now >= deadline) {
+                throw new JSchException("all " + maxTotal + " channels in use");
+            }
+            try {
+                wait(deadline - now);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new JSchException("interrupted while waiting for a channel", e);
+            }
+            now = System.currentTimeMillis();
+        }
+    }
+
+    private void evict(long now, List<T> closing) {
+        while (idle.size() > minIdle && now - idle.getFirst().since >= idleTimeout) {
+            closing.add(idle.removeFirst().channel);
+        }
+    }
+
+    private void disconnectAll(List<T> closing) {
+        for (T channel : closing) {
+            disconnect(channel);
+        }
+    }
+
+    private static class Idle<T> {
+        public final T channel;
+        /** when the channel was freed */
+        public final long since;
+
+        public Idle(T channel, long since) {
+            this.channel = channel;
+            this.since = since;
+        }
+    }
+}
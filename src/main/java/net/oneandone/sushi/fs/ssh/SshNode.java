@@ -41,13 +41,12 @@ import net.oneandone.sushi.fs.ReadLinkException;
 import net.oneandone.sushi.fs.SetLastModifiedException;
 import net.oneandone.sushi.fs.World;
 import net.oneandone.sushi.fs.WriteToException;
-import net.oneandone.sushi.fs.file.FileNode;
-import net.oneandone.sushi.io.CheckedByteArrayOutputStream;
 import net.oneandone.sushi.launcher.ExitCode;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -656,39 +655,123 @@ public class SshNode extends Node {
         return this;
     }
 
+    /** Streams the remote file; the stream occupies an sftp channel until it is closed. */
     @Override
     public InputStream createInputStream() throws FileNotFoundException, CreateInputStreamException {
-        final FileNode tmp;
+        ChannelSftp sftp;
+        InputStream src;
 
         try {
-            tmp = getWorld().getTemp().createTempFile();
-            try (OutputStream dest = tmp.createOutputStream()) {
-                writeTo(dest);
+            sftp = alloc();
+        } catch (JSchException e) {
+            throw new CreateInputStreamException(this, e);
+        }
+        try {
+            if (sftp.stat(escape(slashPath)).isDir()) {
+                throw new FileNotFoundException(this);
+            }
+            src = sftp.get(escape(slashPath));
+        } catch (SftpException e) {
+            root.freeChannelSftp(sftp);
+            if (e.id == 2 || e.id == 4) {
+                throw new FileNotFoundException(this);
             }
-        } catch (FileNotFoundException e) {
-            throw e;
-        } catch (IOException e) {
             throw new CreateInputStreamException(this, e);
+        } catch (FileNotFoundException | RuntimeException e) {
+            root.freeChannelSftp(sftp);
+            throw e;
         }
-        return tmp.createInputStreamDeleteOnClose();
+        return new ChannelInputStream(src, sftp);
     }
 
+    /** Streams to the remote file; the stream occupies an sftp channel until it is closed. */
     @Override
-    public OutputStream createOutputStream(final boolean append) throws FileNotFoundException, CreateOutputStreamException {
+    public OutputStream createOutputStream(boolean append) throws FileNotFoundException, CreateOutputStreamException {
+        ChannelSftp sftp;
+        OutputStream dest;
+
         try {
             if (isDirectory()) {
                 throw new FileNotFoundException(this);
             }
-        } catch (ExistsException e) {
+            sftp = alloc();
+        } catch (ExistsException | JSchException e) {
             throw new CreateOutputStreamException(this, e);
         }
-        return new CheckedByteArrayOutputStream() {
-            @Override
-            public void close() throws IOException {
+        try {
+            dest = sftp.put(escape(slashPath), append ? ChannelSftp.APPEND : ChannelSftp.OVERWRITE);
+        } catch (SftpException e) {
+            root.freeChannelSftp(sftp);
+            throw new CreateOutputStreamException(this, e);
+        } catch (RuntimeException e) {
+            root.freeChannelSftp(sftp);
+            throw e;
+        }
+        return new ChannelOutputStream(dest, sftp);
+    }
+
+    /** Returns the channel to the root when closed. */
+    private class ChannelInputStream extends FilterInputStream {
+        private ChannelSftp sftp;
+
+        public ChannelInputStream(InputStream src, ChannelSftp sftp) {
+            super(src);
+            this.sftp = sftp;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (sftp == null) {
+                return;
+            }
+            try {
                 super.close();
-                readFrom(new ByteArrayInputStream(toByteArray()), append);
+            } finally {
+                root.freeChannelSftp(sftp);
+                sftp = null;
             }
-        };
+        }
+    }
+
+    /** Returns the channel to the root when closed. */
+    private class ChannelOutputStream extends FilterOutputStream {
+        private ChannelSftp sftp;
+
+        public ChannelOutputStream(OutputStream dest, ChannelSftp sftp) {
+            super(dest);
+            this.sftp = sftp;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ensureOpen();
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ensureOpen();
+            out.write(b);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (sftp == null) {
+                return;
+            }
+            try {
+                out.close();
+            } finally {
+                root.freeChannelSftp(sftp);
+                sftp = null;
+            }
+        }
+
+        private void ensureOpen() throws IOException {
+            if (sftp == null) {
+                throw new IOException("stream closed");
+            }
+        }
     }
 
     private static class Progress implements SftpProgressMonitor {
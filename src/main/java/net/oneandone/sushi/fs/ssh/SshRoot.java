@@ -28,13 +28,19 @@ import java.io.ByteArrayOutputStream;
 import java.io.OutputStream;
 
 public class SshRoot implements Root<SshNode>, Runnable {
+    /** no limit: a stream holds its channel until it is closed, so copying between two nodes of this root needs two */
+    public static final int DEFAULT_MAX_TOTAL = 0;
+    public static final long DEFAULT_MAX_WAIT = 60000;
+    public static final int DEFAULT_MIN_IDLE = 0;
+    public static final int DEFAULT_MAX_IDLE = 8;
+    public static final long DEFAULT_IDLE_TIMEOUT = 60000;
+
     private final SshFilesystem filesystem;
 
     /** connected session */
     private final Session session;
 
-    // created on demand because it's only needed for nodes, not for "exec" stuff
-    private ChannelSftp sftp;
+    private final ChannelPool<ChannelSftp> sftp;
 
     /** @param password may be null */
     public SshRoot(SshFilesystem filesystem, String host, String user, String password, int timeout) throws JSchException {
@@ -52,7 +58,27 @@ public class SshRoot implements Root<SshNode>, Runnable {
         }
         this.filesystem = filesystem;
         this.session = session;
-        this.sftp = null;
+        this.sftp = new ChannelPool<ChannelSftp>(DEFAULT_MAX_TOTAL, DEFAULT_MAX_WAIT, DEFAULT_MIN_IDLE, DEFAULT_MAX_IDLE,
+                DEFAULT_IDLE_TIMEOUT) {
+            @Override
+            protected ChannelSftp open() throws JSchException {
+                ChannelSftp result;
+
+                result = (ChannelSftp) SshRoot.this.session.openChannel("sftp");
+                result.connect();
+                return result;
+            }
+
+            @Override
+            protected boolean isHealthy(ChannelSftp channel) {
+                return SshRoot.this.session.isConnected() && channel.isConnected() && !channel.isClosed();
+            }
+
+            @Override
+            protected void disconnect(ChannelSftp channel) {
+                channel.disconnect();
+            }
+        };
         OnShutdown.get().onShutdown(this);
     }
 
@@ -97,35 +123,79 @@ public class SshRoot implements Root<SshNode>, Runnable {
         return "SshNode host=" + getHost() + ", user=" + getUser();
     }
 
-    //--
+    //-- sftp channel pool; see ChannelPool
 
-    private int allocated = 0;
+    public int getMaxTotal() {
+        return sftp.getMaxTotal();
+    }
 
-    public synchronized int getAllocated() {
-        return allocated;
+    /**
+     * @param maxTotal 0 for no limit; otherwise should not exceed the MaxSessions setting of the server, minus channels
+     *                 used for exec. Note that a copy between two nodes of this root holds two channels at once, so
+     *                 parallel copies can exhaust the limit and wait for each other until maxWait expires.
+     */
+    public void setMaxTotal(int maxTotal) {
+        sftp.setMaxTotal(maxTotal);
     }
 
-    public synchronized ChannelSftp allocateChannelSftp() throws JSchException {
-        ChannelSftp result;
+    /** millis */
+    public long getMaxWait() {
+        return sftp.getMaxWait();
+    }
 
-        if (sftp != null) {
-            result = sftp;
-            sftp = null;
-        } else {
-            result = (ChannelSftp) session.openChannel("sftp");
-            result.connect();
-        }
-        allocated++;
-        return result;
+    /** @param maxWait millis to wait for a channel if maxTotal channels are allocated; 0 to fail immediately */
+    public void setMaxWait(long maxWait) {
+        sftp.setMaxWait(maxWait);
     }
 
-    public synchronized void freeChannelSftp(ChannelSftp free) {
-        if (sftp == null) {
-            sftp = free;
-        } else {
-            free.disconnect();
-        }
-        allocated--;
+    public int getMinIdle() {
+        return sftp.getMinIdle();
+    }
+
+    public void setMinIdle(int minIdle) {
+        sftp.setMinIdle(minIdle);
+    }
+
+    public int getMaxIdle() {
+        return sftp.getMaxIdle();
+    }
+
+    /** @param maxIdle 0 to disconnect all channels when they are freed */
+    public void setMaxIdle(int maxIdle) {
+        sftp.setMaxIdle(maxIdle);
+    }
+
+    /** millis */
+    public long getIdleTimeout() {
+        return sftp.getIdleTimeout();
+    }
+
+    /** millis */
+    public void setIdleTimeout(long idleTimeout) {
+        sftp.setIdleTimeout(idleTimeout);
+    }
+
+    /** @return number of channels currently in use */
+    public int getAllocated() {
+        return sftp.getAllocated();
+    }
+
+    /** @return number of channels available for re-use */
+    public int getIdle() {
+        return sftp.getIdle();
+    }
+
+    /** @return number of channels opened since this root was created */
+    public int getOpened() {
+        return sftp.getOpened();
+    }
+
+    public ChannelSftp allocateChannelSftp() throws JSchException {
+        return sftp.allocate();
+    }
+
+    public void freeChannelSftp(ChannelSftp free) {
+        sftp.free(free);
     }
 
     public ChannelExec createChannelExec() throws JSchException {
@@ -133,6 +203,7 @@ public class SshRoot implements Root<SshNode>, Runnable {
     }
 
     public void close() {
+        sftp.close();
         session.disconnect();
     }
 
@@ -16,52 +16,28 @@
 package net.oneandone.sushi.fs.webdav;
 
 import net.oneandone.sushi.fs.webdav.methods.Method;
-import net.oneandone.sushi.xml.Builder;
 import net.oneandone.sushi.xml.ChildElements;
 import net.oneandone.sushi.xml.Dom;
 import net.oneandone.sushi.xml.Xml;
 import org.apache.http.HttpResponse;
 import org.apache.http.message.BasicLineParser;
 import org.w3c.dom.Element;
-import org.xml.sax.SAXException;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.ArrayList;
 import java.util.List;
 
 public class MultiStatus {
     private static final String XML_STATUS = "status";
     private static final String XML_PROPSTAT = "propstat";
 
+    /** Reads the complete response. Use a MultiStatusReader to process large responses incrementally. */
 	public static List<MultiStatus> fromResponse(Xml xml, HttpResponse response) throws IOException {
-        Builder builder;
-        InputStream in;
-		Element root;
-		List<MultiStatus> result;
-		ChildElements iter;
-
-        in = response.getEntity().getContent();
-        try {
-            builder = xml.getBuilder();
-            synchronized (builder) {
-                root = builder.parse(in).getDocumentElement();
-            }
-        } catch (SAXException e) {
-            throw new IOException(e.getMessage(), e);
-        } finally {
-            in.close();
+        try (MultiStatusReader reader = new MultiStatusReader(xml, response.getEntity().getContent())) {
+            return reader.readAll();
         }
-   		Dom.require(root, "multistatus", Method.DAV);
-		result = new ArrayList<MultiStatus>();
-		iter = Method.DAV.childElements(root, Method.XML_RESPONSE);
-		while (iter.hasNext()) {
-			fromXml(iter.next(), result);
-		}
-		return result;
     }
 
-    private static void fromXml(Element response, List<MultiStatus> result) throws IOException {
+    static void fromXml(Element response, List<MultiStatus> result) throws IOException {
 		Element href;
 		String str;
         ChildElements iter;
@@ -0,0 +1,183 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.sushi.fs.webdav;
+
+import net.oneandone.sushi.fs.webdav.methods.Method;
+import net.oneandone.sushi.xml.Xml;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a multistatus body one response element at a time, so memory does not grow with the number of responses.
+ * Only the current response element is turned into a dom tree.
+ */
+public class MultiStatusReader implements Closeable {
+    private static final XMLInputFactory FACTORY;
+
+    static {
+        FACTORY = XMLInputFactory.newInstance();
+        FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
+        FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private final InputStream src;
+    private final XMLStreamReader reader;
+
+    /** owner of the response elements */
+    private final Document document;
+
+    /** Reads the multistatus start tag; closes src if this fails. */
+    public MultiStatusReader(Xml xml, InputStream src) throws IOException {
+        this.src = src;
+        this.document = xml.getBuilder().createDocument();
+        try {
+            synchronized (FACTORY) {
+                this.reader = FACTORY.createXMLStreamReader(src);
+            }
+            reader.nextTag();
+            require("multistatus");
+        } catch (XMLStreamException e) {
+            src.close();
+            throw new IOException(e.getMessage(), e);
+        } catch (IOException | RuntimeException e) {
+            src.close();
+            throw e;
+        }
+    }
+
+    /** @return statuses of the next response element, null at the end of the multistatus element */
+    public List<MultiStatus> next() throws IOException {
+        List<MultiStatus> result;
+
+        try {
+            if (reader.nextTag() == XMLStreamConstants.END_ELEMENT) {
+                return null;
+            }
+            require(Method.XML_RESPONSE);
+            result = new ArrayList<>();
+            MultiStatus.fromXml(element(), result);
+            return result;
+        } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /** @return all remaining statuses */
+    public List<MultiStatus> readAll() throws IOException {
+        List<MultiStatus> result;
+        List<MultiStatus> statuses;
+
+        result = new ArrayList<>();
+        while (true) {
+            statuses = next();
+            if (statuses == null) {
+                return result;
+            }
+            result.addAll(statuses);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            src.close();
+        }
+    }
+
+    //--
+
+    private void require(String localName) throws IOException {
+        if (!localName.equals(reader.getLocalName()) || !Method.DAV.getUri().equals(reader.getNamespaceURI())) {
+            throw new IOException("expected " + Method.DAV.getUri() + ":" + localName + ", got "
+                    + reader.getNamespaceURI() + ":" + reader.getLocalName());
+        }
+    }
+
+    /** Reads the current start element including all content into a dom element. */
+    private Element element() throws XMLStreamException {
+        Element result;
+        Element current;
+        Element child;
+        int depth;
+
+        result = create();
+        current = result;
+        depth = 1;
+        while (depth > 0) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    child = create();
+                    current.appendChild(child);
+                    current = child;
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    if (depth > 0) {
+                        current = (Element) current.getParentNode();
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    current.appendChild(document.createTextNode(reader.getText()));
+                    break;
+                default:
+                    // ignore comments and processing instructions
+                    break;
+            }
+        }
+        return result;
+    }
+
+    private Element create() {
+        Element result;
+        String prefix;
+        String ns;
+
+        prefix = reader.getPrefix();
+        ns = reader.getNamespaceURI();
+        if (ns == null || ns.isEmpty()) {
+            result = document.createElementNS(null, reader.getLocalName());
+        } else {
+            result = document.createElementNS(ns, prefix == null || prefix.isEmpty()
+                    ? reader.getLocalName() : prefix + ":" + reader.getLocalName());
+        }
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            ns = reader.getAttributeNamespace(i);
+            prefix = reader.getAttributePrefix(i);
+            result.setAttributeNS(ns == null || ns.isEmpty() ? null : ns, prefix == null || prefix.isEmpty()
+                    ? reader.getAttributeLocalName(i) : prefix + ":" + reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+        }
+        return result;
+    }
+}
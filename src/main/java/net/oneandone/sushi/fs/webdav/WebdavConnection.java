@@ -41,6 +41,7 @@ import org.apache.http.params.HttpParams;
 import java.io.IOException;
 import java.net.Socket;
 import java.net.SocketException;
+import java.net.SocketTimeoutException;
 import java.util.logging.Level;
 
 public class WebdavConnection implements HttpClientConnection {
@@ -136,9 +137,35 @@ public class WebdavConnection implements HttpClientConnection {
         return open;
     }
 
+    /** Checks whether the server has closed the connection; blocks for at most 1 millisecond. */
     @Override
     public boolean isStale() {
-        return !isOpen(); // TODO: don't know how to reasonably implement this ...
+        if (!isOpen()) {
+            return true;
+        }
+        try {
+            return probeEof();
+        } catch (SocketTimeoutException e) {
+            return false;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    /**
+     * EofSensor and isDataAvailable are deprecated since HttpCore 4.4 in favor of BHttpConnectionBase, but this
+     * connection is built on the blocking SocketInputBuffer, and that buffer only reports eof through them.
+     */
+    @SuppressWarnings("deprecation")
+    private boolean probeEof() throws IOException {
+        org.apache.http.io.EofSensor sensor;
+
+        sensor = input instanceof org.apache.http.io.EofSensor ? (org.apache.http.io.EofSensor) input : null;
+        if (sensor != null && sensor.isEof()) {
+            return true;
+        }
+        input.isDataAvailable(1);
+        return sensor != null && sensor.isEof();
     }
 
     public void setSocketTimeout(int timeout) {
@@ -45,6 +45,7 @@ import org.apache.http.HttpHost;
 import org.apache.http.HttpStatus;
 import org.apache.http.impl.io.ChunkedOutputStream;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -78,6 +79,9 @@ public class WebdavNode extends Node {
 
     private final Object tryLock;
 
+    /** attributes received when listing the parent; null if unknown */
+    private volatile Attributes attributes;
+
     /** @param encodedQuery null or query without initial "?" */
     public WebdavNode(WebdavRoot root, String path, String encodedQuery, boolean tryDir) {
         if (path.startsWith("/")) {
@@ -91,6 +95,7 @@ public class WebdavNode extends Node {
         this.encodedQuery = encodedQuery;
         this.tryDir = tryDir;
         this.tryLock = new Object();
+        this.attributes = null;
     }
 
     public URI getURI() {
@@ -143,9 +148,14 @@ public class WebdavNode extends Node {
 
     @Override
     public long length() throws LengthException {
+        Attributes snapshot;
         boolean oldTryDir;
         Property property;
 
+        snapshot = attributes();
+        if (snapshot != null && !snapshot.directory && snapshot.length >= 0) {
+            return snapshot.length;
+        }
         synchronized (tryLock) {
             oldTryDir = tryDir;
             try {
@@ -173,8 +183,13 @@ public class WebdavNode extends Node {
 
     @Override
     public long getLastModified() throws GetLastModifiedException {
+        Attributes snapshot;
         Property property;
 
+        snapshot = attributes();
+        if (snapshot != null && snapshot.lastModified >= 0) {
+            return snapshot.lastModified;
+        }
         try {
             synchronized (tryLock) {
                 try {
@@ -188,14 +203,18 @@ public class WebdavNode extends Node {
             throw new GetLastModifiedException(this, e);
         }
         try {
-            synchronized (FMT) {
-                return FMT.parse((String) property.getValue()).getTime();
-            }
+            return parseDate((String) property.getValue());
         } catch (ParseException e) {
             throw new GetLastModifiedException(this, e);
         }
     }
 
+    private static long parseDate(String str) throws ParseException {
+        synchronized (FMT) {
+            return FMT.parse(str).getTime();
+        }
+    }
+
     @Override
     public void setLastModified(long millis) throws SetLastModifiedException {
         // no allowed by webdav standard
@@ -251,6 +270,7 @@ public class WebdavNode extends Node {
 
     @Override
     public Node deleteFile() throws DeleteException, FileNotFoundException {
+        attributes = null;
         try {
             synchronized (tryLock) {
                 tryDir = false;
@@ -278,6 +298,7 @@ public class WebdavNode extends Node {
             if (lst.size() > 0) {
                 throw new DeleteException(this, "directory is not empty");
             }
+            attributes = null;
             synchronized (tryLock) {
                 try {
                     new Delete(this).invoke();
@@ -296,6 +317,7 @@ public class WebdavNode extends Node {
 
     @Override
     public Node deleteTree() throws DeleteException, NodeNotFoundException {
+        attributes = null;
         try {
             synchronized (tryLock) {
                 try {
@@ -323,6 +345,8 @@ public class WebdavNode extends Node {
     }
 
     public WebdavNode move(WebdavNode dest, boolean overwrite) throws MoveException {
+        attributes = null;
+        dest.attributes = null;
         try {
             synchronized (tryLock) {
                 try {
@@ -342,6 +366,7 @@ public class WebdavNode extends Node {
 
     @Override
     public WebdavNode mkdir() throws MkdirException {
+        attributes = null;
         try {
             synchronized (tryLock) {
                 tryDir = true;
@@ -365,6 +390,9 @@ public class WebdavNode extends Node {
 
     @Override
     public boolean exists() throws ExistsException {
+        if (attributes() != null) {
+            return true;
+        }
         synchronized (tryLock) {
             try {
                 new Head(this).invoke();
@@ -387,12 +415,18 @@ public class WebdavNode extends Node {
 
     @Override
     public boolean isFile() throws ExistsException {
-        return tryDir(false);
+        Attributes snapshot;
+
+        snapshot = attributes();
+        return snapshot != null ? !snapshot.directory : tryDir(false);
     }
 
     @Override
     public boolean isDirectory() throws ExistsException {
-        return tryDir(true);
+        Attributes snapshot;
+
+        snapshot = attributes();
+        return snapshot != null ? snapshot.directory : tryDir(true);
     }
 
     @Override
@@ -432,6 +466,7 @@ public class WebdavNode extends Node {
         } catch (ExistsException e) {
             throw new CreateOutputStreamException(this, e);
         }
+        attributes = null;
         try {
             if (append) {
                 try {
@@ -468,30 +503,51 @@ public class WebdavNode extends Node {
         }
     }
 
+    /** Children know their attributes for WebdavRoot.getAttributesTimeout() millis. */
     @Override
     public List<WebdavNode> list() throws ListException, DirectoryNotFoundException {
-        PropFind method;
+        Listing listing;
         List<WebdavNode> result;
-        URI href;
+        WebdavNode child;
 
-        synchronized (tryLock) {
+        listing = listing();
+        if (listing == null) {
+            return null;
+        }
+        result = new ArrayList<>();
+        try {
             try {
-                tryDir = true;
-                method = new PropFind(this, Name.DISPLAYNAME, 1);
-                result = new ArrayList<>();
-                for (MultiStatus response : method.invoke()) {
-                    try {
-                        href = new URI(response.href);
-                    } catch (URISyntaxException e) {
-                        throw new ListException(this, e);
-                    }
-                    if (samePath(href)) {
-                        // ignore "."
-                    } else {
-                        result.add(createChild(href));
+                while (true) {
+                    child = listing.next();
+                    if (child == null) {
+                        return result;
                     }
+                    result.add(child);
                 }
-                return result;
+            } finally {
+                listing.close();
+            }
+        } catch (ListException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new ListException(this, e);
+        }
+    }
+
+    /**
+     * Like list, but hands out children while the server response arrives, so memory does not grow with the
+     * number of children.
+     *
+     * @return null if this is a file; otherwise, the caller has to close the result
+     */
+    public Listing listing() throws ListException, DirectoryNotFoundException {
+        PropFind method;
+
+        synchronized (tryLock) {
+            try {
+                tryDir = true;
+                method = new PropFind(this, 1, Name.RESOURCETYPE, Name.GETCONTENTLENGTH, Name.GETLASTMODIFIED);
+                return new Listing(method.open());
             } catch (StatusException e) {
                 if (e.getStatusLine().getStatusCode() == 400) {
                     return null; // this is a file
@@ -508,6 +564,57 @@ public class WebdavNode extends Node {
         }
     }
 
+    /** Children of a directory, in the order sent by the server. Holds a connection until closed. */
+    public class Listing implements Closeable {
+        private final MultiStatusReader reader;
+
+        private Listing(MultiStatusReader reader) {
+            this.reader = reader;
+        }
+
+        /** @return null when all children have been returned */
+        public WebdavNode next() throws ListException {
+            List<MultiStatus> statuses;
+            List<Property> properties;
+            URI href;
+
+            while (true) {
+                try {
+                    statuses = reader.next();
+                } catch (IOException e) {
+                    throw new ListException(WebdavNode.this, e);
+                }
+                if (statuses == null) {
+                    return null;
+                }
+                if (statuses.isEmpty()) {
+                    continue;
+                }
+                try {
+                    href = new URI(statuses.get(0).href);
+                } catch (URISyntaxException e) {
+                    throw new ListException(WebdavNode.this, e);
+                }
+                if (samePath(href)) {
+                    // ignore "."
+                    continue;
+                }
+                properties = new ArrayList<>();
+                for (MultiStatus status : statuses) {
+                    if (status.status == HttpStatus.SC_OK) {
+                        properties.add(status.property);
+                    }
+                }
+                return createChild(href, properties);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
     private boolean samePath(URI uri) {
         String cmp;
         int idx;
@@ -526,10 +633,12 @@ public class WebdavNode extends Node {
         return false;
     }
 
-	private WebdavNode createChild(URI href) {
+	private WebdavNode createChild(URI href, List<Property> properties) {
 		String childPath;
 		boolean dir;
 		WebdavNode result;
+        long length;
+        long lastModified;
 
         childPath = href.getPath();
 		dir = childPath.endsWith("/");
@@ -539,11 +648,63 @@ public class WebdavNode extends Node {
         childPath = Strings.removeLeft(childPath, "/");
         if (!childPath.startsWith(path)) {
             throw new IllegalStateException();
+        }
+        length = -1;
+        lastModified = -1;
+        for (Property property : properties) {
+            if (Name.RESOURCETYPE.equals(property.getName())) {
+                dir = isCollection(property.getValue());
+            } else if (Name.GETCONTENTLENGTH.equals(property.getName())) {
+                try {
+                    length = Long.parseLong(((String) property.getValue()).trim());
+                } catch (ClassCastException | NullPointerException | NumberFormatException e) {
+                    // not available
+                }
+            } else if (Name.GETLASTMODIFIED.equals(property.getName())) {
+                try {
+                    lastModified = parseDate((String) property.getValue());
+                } catch (ClassCastException | NullPointerException | ParseException e) {
+                    // not available
+                }
+            }
         }
 		result = new WebdavNode(root, childPath, null, dir);
+        if (root.getAttributesTimeout() > 0) {
+            result.attributes = new Attributes(dir, length, lastModified,
+                    System.currentTimeMillis() + root.getAttributesTimeout());
+        }
 		return result;
 	}
 
+    /** @return null if there's no snapshot or if it has expired */
+    private Attributes attributes() {
+        Attributes result;
+
+        result = attributes;
+        if (result != null && System.currentTimeMillis() >= result.expires) {
+            attributes = null;
+            return null;
+        }
+        return result;
+    }
+
+    /** Attributes as reported by the server when listing the parent directory */
+    private static class Attributes {
+        public final boolean directory;
+        /** -1 if unknown */
+        public final long length;
+        /** -1 if unknown */
+        public final long lastModified;
+        public final long expires;
+
+        public Attributes(boolean directory, long length, long lastModified, long expires) {
+            this.directory = directory;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.expires = expires;
+        }
+    }
+
     public String getAttribute(String name) throws WebdavException {
     	Property result;
     	Name n;
@@ -575,6 +736,7 @@ public class WebdavNode extends Node {
     private void setProperty(Name name, String value) throws IOException {
     	Property prop;
 
+        attributes = null;
         prop = new Property(name, value);
         synchronized (tryLock) {
             try {
@@ -634,15 +796,22 @@ public class WebdavNode extends Node {
     }
 
     private boolean doTryDirDav() throws IOException {
-        Property property;
-        org.w3c.dom.Node node;
+        return tryDir == isCollection(getProperty(Name.RESOURCETYPE).getValue());
+    }
 
-        property = getProperty(Name.RESOURCETYPE);
-        node = (org.w3c.dom.Node) property.getValue();
-        if (node == null) {
-            return tryDir == false;
+    /** @param resourceType value of a resourcetype property */
+    private static boolean isCollection(Object resourceType) {
+        if (resourceType instanceof org.w3c.dom.Node) {
+            return "collection".equals(((org.w3c.dom.Node) resourceType).getLocalName());
         }
-        return tryDir == "collection".equals(node.getLocalName());
+        if (resourceType instanceof List<?>) {
+            for (Object item : (List<?>) resourceType) {
+                if (isCollection(item)) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
     private boolean doTryDirHttp() throws IOException {
@@ -34,20 +34,27 @@ import org.apache.http.protocol.HTTP;
 
 import javax.net.ssl.SSLSocketFactory;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.Socket;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class WebdavRoot implements Root<WebdavNode> {
+    public static final long DEFAULT_ATTRIBUTES_TIMEOUT = 5000;
+
     private final WebdavFilesystem filesystem;
     public final HttpHost host;
     private final HttpParams params;
     private String authorization;
+    private volatile long attributesTimeout;
 
     public WebdavRoot(WebdavFilesystem filesystem, String protocol, String host, int port) {
         this.filesystem = filesystem;
         this.host = new HttpHost(host, port, protocol);
         this.authorization = null;
+        this.attributesTimeout = DEFAULT_ATTRIBUTES_TIMEOUT;
         this.params = new BasicHttpParams();
 
         HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
@@ -85,6 +92,24 @@ public class WebdavRoot implements Root<WebdavNode> {
         HttpConnectionParams.setSoTimeout(params, millis);
     }
 
+    /** millis */
+    public long getAttributesTimeout() {
+        return attributesTimeout;
+    }
+
+    /**
+     * How long nodes returned by list may answer exists, isFile, isDirectory, length and getLastModified from
+     * the listing instead of asking the server.
+     *
+     * @param millis 0 to disable
+     */
+    public void setAttributesTimeout(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("attributesTimeout: " + millis);
+        }
+        this.attributesTimeout = millis;
+    }
+
     @Override
     public boolean equals(Object obj) {
         WebdavRoot root;
@@ -117,51 +142,254 @@ public class WebdavRoot implements Root<WebdavNode> {
         return new WebdavNode(this, path, encodedQuery, false);
     }
 
-    private final List<WebdavConnection> pool = new ArrayList<WebdavConnection>();
-    private int allocated = 0;
+    //-- connection pool
+    //   Idle connections are kept in a lock-free deque, most recently freed last. allocate re-uses the most recently freed
+    //   connection that is not expired and not stale. Only allocations beyond maxTotal synchronize - to wait for a connection.
 
-    public synchronized WebdavConnection allocate() throws IOException {
-        int size;
+    public static final int DEFAULT_MAX_TOTAL = 0;
+    public static final int DEFAULT_MAX_IDLE = 10;
+    public static final long DEFAULT_IDLE_TIMEOUT = 30000;
 
-        allocated++;
-        size = pool.size();
-        if (size > 0) {
-            return pool.remove(size - 1);
-        } else {
-        	Socket socket;
+    private volatile int maxTotal = DEFAULT_MAX_TOTAL;
+    private volatile int maxIdle = DEFAULT_MAX_IDLE;
+    private volatile long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+
+    private final Deque<IdleConnection> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final AtomicInteger allocated = new AtomicInteger();
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+
+    /** monitor to wait for free connections when maxTotal is reached */
+    private final Object slots = new Object();
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    /** @param maxTotal maximum number of allocated connections, allocate blocks if exceeded; 0 for no limit */
+    public void setMaxTotal(int maxTotal) {
+        if (maxTotal < 0) {
+            throw new IllegalArgumentException("maxTotal: " + maxTotal);
+        }
+        this.maxTotal = maxTotal;
+        synchronized (slots) {
+            slots.notifyAll();
+        }
+    }
+
+    public int getMaxIdle() {
+        return maxIdle;
+    }
+
+    public void setMaxIdle(int maxIdle) {
+        if (maxIdle < 0) {
+            throw new IllegalArgumentException("maxIdle: " + maxIdle);
+        }
+        this.maxIdle = maxIdle;
+    }
+
+    /** millis */
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /** @param idleTimeout millis after which idle connections are closed */
+    public void setIdleTimeout(long idleTimeout) {
+        if (idleTimeout < 0) {
+            throw new IllegalArgumentException("idleTimeout: " + idleTimeout);
+        }
+        this.idleTimeout = idleTimeout;
+    }
+
+    public WebdavConnection allocate() throws IOException {
+        WebdavConnection result;
 
-            if ("https".equals(host.getSchemeName())) {
-                socket = SSLSocketFactory.getDefault().createSocket(host.getHostName(), host.getPort());
-            } else {
-                socket = new Socket(host.getHostName(), host.getPort());
+        acquire();
+        try {
+            result = pollIdle();
+            if (result != null) {
+                reused.incrementAndGet();
+                return result;
             }
-            return WebdavConnection.open(socket, params);
+            result = open();
+            opened.incrementAndGet();
+            return result;
+        } catch (IOException | RuntimeException e) {
+            release();
+            throw e;
         }
     }
 
-    public synchronized void free(HttpResponse response, WebdavConnection connection) throws IOException {
+    public void free(HttpResponse response, WebdavConnection connection) throws IOException {
         HttpEntity entity;
 
-        if (allocated == 0) {
+        if (allocated.get() <= 0) {
             throw new IllegalStateException();
         }
-        allocated--;
-        if (response != null) {
-            entity = response.getEntity();
-            if (entity != null) {
-                entity.getContent().close();
+        try {
+            if (response != null) {
+                entity = response.getEntity();
+                if (entity != null) {
+                    entity.getContent().close();
+                }
             }
+            if (wantsClose(response)) {
+                connection.close();
+            }
+            if (connection.isOpen()) {
+                if (idleCount.incrementAndGet() <= maxIdle) {
+                    idle.offerLast(new IdleConnection(connection, System.currentTimeMillis()));
+                } else {
+                    idleCount.decrementAndGet();
+                    connection.close();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(connection);
+            throw e;
+        } finally {
+            release();
+            evict();
         }
-        if (wantsClose(response)) {
-            connection.close();
+    }
+
+    /** closes all idle connections */
+    public void closeIdle() {
+        IdleConnection item;
+
+        while (true) {
+            item = idle.pollFirst();
+            if (item == null) {
+                return;
+            }
+            idleCount.decrementAndGet();
+            closeQuietly(item.connection);
         }
-        if (connection.isOpen() && pool.size() < 10) {
-            pool.add(connection);
+    }
+
+    //-- statistics
+
+    /** @return number of connections currently in use */
+    public int getAllocated() {
+        return allocated.get();
+    }
+
+    /** @return number of open connections available for re-use */
+    public int getIdle() {
+        return idleCount.get();
+    }
+
+    /** @return number of connections opened so far */
+    public long getOpened() {
+        return opened.get();
+    }
+
+    /** @return number of allocations served by an idle connection */
+    public long getReused() {
+        return reused.get();
+    }
+
+    //--
+
+    private void acquire() throws IOException {
+        int current;
+        int max;
+
+        while (true) {
+            current = allocated.get();
+            max = maxTotal;
+            if (max > 0 && current >= max) {
+                synchronized (slots) {
+                    while (maxTotal > 0 && allocated.get() >= maxTotal) {
+                        try {
+                            slots.wait();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new InterruptedIOException("waiting for webdav connection");
+                        }
+                    }
+                }
+            } else if (allocated.compareAndSet(current, current + 1)) {
+                return;
+            }
+        }
+    }
+
+    private void release() {
+        allocated.decrementAndGet();
+        if (maxTotal > 0) {
+            synchronized (slots) {
+                slots.notifyAll();
+            }
         }
     }
 
-    public synchronized int getAllocated() {
-        return allocated;
+    /** @return null if there's no usable idle connection */
+    private WebdavConnection pollIdle() {
+        IdleConnection item;
+        long now;
+
+        now = System.currentTimeMillis();
+        while (true) {
+            item = idle.pollLast();
+            if (item == null) {
+                return null;
+            }
+            idleCount.decrementAndGet();
+            if (now - item.since < idleTimeout && !item.connection.isStale()) {
+                return item.connection;
+            }
+            closeQuietly(item.connection);
+        }
+    }
+
+    /** closes expired connections, oldest first */
+    private void evict() {
+        IdleConnection item;
+        long now;
+
+        now = System.currentTimeMillis();
+        while (true) {
+            item = idle.peekFirst();
+            if (item == null || now - item.since < idleTimeout) {
+                return;
+            }
+            if (idle.removeFirstOccurrence(item)) {
+                idleCount.decrementAndGet();
+                closeQuietly(item.connection);
+            }
+        }
+    }
+
+    private WebdavConnection open() throws IOException {
+        Socket socket;
+
+        if ("https".equals(host.getSchemeName())) {
+            socket = SSLSocketFactory.getDefault().createSocket(host.getHostName(), host.getPort());
+        } else {
+            socket = new Socket(host.getHostName(), host.getPort());
+        }
+        return WebdavConnection.open(socket, params);
+    }
+
+    private static void closeQuietly(WebdavConnection connection) {
+        try {
+            connection.close();
+        } catch (IOException e) {
+            // ignored - the connection is not used anymore
+        }
+    }
+
+    private static class IdleConnection {
+        public final WebdavConnection connection;
+        /** when the connection was freed */
+        public final long since;
+
+        public IdleConnection(WebdavConnection connection, long since) {
+            this.connection = connection;
+            this.since = since;
+        }
     }
 
     private static boolean wantsClose(HttpResponse response) {
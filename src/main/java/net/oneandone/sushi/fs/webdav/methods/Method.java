@@ -18,7 +18,6 @@ package net.oneandone.sushi.fs.webdav.methods;
 import net.oneandone.sushi.fs.webdav.WebdavConnection;
 import net.oneandone.sushi.fs.webdav.WebdavNode;
 import net.oneandone.sushi.xml.Namespace;
-import net.oneandone.sushi.xml.Serializer;
 import net.oneandone.sushi.xml.Xml;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
@@ -63,14 +62,10 @@ public abstract class Method<T> {
     }
 
     public void setRequestEntity(Document body) throws IOException {
-        Serializer serializer;
         ByteArrayOutputStream serialized;
 
         serialized = new ByteArrayOutputStream();
-        serializer = getXml().getSerializer();
-        synchronized (serializer) {
-            serializer.serialize(new DOMSource(body), new StreamResult(serialized), true);
-        }
+        getXml().getSerializer().serialize(new DOMSource(body), new StreamResult(serialized), true);
     	request.setEntity(new ByteArrayEntity(serialized.toByteArray()));
     }
 
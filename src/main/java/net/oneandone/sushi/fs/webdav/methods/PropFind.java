@@ -18,34 +18,82 @@ package net.oneandone.sushi.fs.webdav.methods;
 import net.oneandone.sushi.fs.FileNotFoundException;
 import net.oneandone.sushi.fs.webdav.MovedException;
 import net.oneandone.sushi.fs.webdav.MultiStatus;
+import net.oneandone.sushi.fs.webdav.MultiStatusReader;
 import net.oneandone.sushi.fs.webdav.Name;
 import net.oneandone.sushi.fs.webdav.StatusException;
 import net.oneandone.sushi.fs.webdav.WebdavConnection;
 import net.oneandone.sushi.fs.webdav.WebdavNode;
+import net.oneandone.sushi.fs.webdav.WebdavRoot;
 import net.oneandone.sushi.xml.Builder;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 
 import java.io.IOException;
 import java.util.List;
 
 public class PropFind extends Method<List<MultiStatus>> {
     public PropFind(WebdavNode resource, Name name, int depth) throws IOException {
+        this(resource, depth, name);
+    }
+
+    public PropFind(WebdavNode resource, int depth, Name ... names) throws IOException {
     	super("PROPFIND", resource);
 
         Document document;
-        Builder builder;
+        Element prop;
 
         setRequestHeader("Depth", String.valueOf(depth));
-        builder = getXml().getBuilder();
-        synchronized (builder) {
-            document = builder.createDocument("propfind", DAV);
+        document = getXml().getBuilder().createDocument("propfind", DAV);
+        prop = Builder.element(document.getDocumentElement(), XML_PROP, DAV);
+        for (Name name : names) {
+            name.addXml(prop);
         }
-		name.addXml(Builder.element(document.getDocumentElement(), XML_PROP, DAV));
         setRequestEntity(document);
     }
 
+    /**
+     * Sends the request and returns a reader for the incoming statuses, so large responses can be processed while
+     * they arrive. Closing the reader frees the connection.
+     */
+    public MultiStatusReader open() throws IOException {
+        final WebdavConnection connection;
+        final HttpResponse response;
+        final WebdavRoot root;
+        MultiStatusReader result;
+
+        connection = request();
+        root = resource.getRoot();
+        response = root.receive(connection, false);
+        try {
+            if (response.getStatusLine().getStatusCode() != HttpStatus.SC_MULTI_STATUS) {
+                processResponse(connection, response);
+                throw new IllegalStateException();
+            }
+            result = new MultiStatusReader(getXml(), response.getEntity().getContent()) {
+                private boolean closed = false;
+
+                @Override
+                public void close() throws IOException {
+                    if (closed) {
+                        return;
+                    }
+                    closed = true;
+                    try {
+                        super.close();
+                    } finally {
+                        root.free(response, connection);
+                    }
+                }
+            };
+        } catch (IOException | RuntimeException e) {
+            root.free(response, connection);
+            throw e;
+        }
+        return result;
+    }
+
     @Override
     public List<MultiStatus> processResponse(WebdavConnection connection, HttpResponse response) throws IOException {
         switch (response.getStatusLine().getStatusCode()) {
@@ -18,7 +18,6 @@ package net.oneandone.sushi.fs.zip;
 import net.oneandone.sushi.fs.CreateInputStreamException;
 import net.oneandone.sushi.fs.DeleteException;
 import net.oneandone.sushi.fs.DirectoryNotFoundException;
-import net.oneandone.sushi.fs.ExistsException;
 import net.oneandone.sushi.fs.FileNotFoundException;
 import net.oneandone.sushi.fs.LengthException;
 import net.oneandone.sushi.fs.ListException;
@@ -36,7 +35,6 @@ import java.nio.file.attribute.UserPrincipal;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 /** Represents an entry in a zip or jar file. Read-only */
 public class ZipNode extends Node {
@@ -73,7 +71,7 @@ public class ZipNode extends Node {
     public long length() throws LengthException {
         ZipEntry entry;
 
-        entry = root.getZip().getEntry(path);
+        entry = root.getEntry(path);
         if (entry == null) {
             throw new LengthException(this, new IOException("file expected"));
         }
@@ -157,36 +155,12 @@ public class ZipNode extends Node {
 
     @Override
     public boolean exists() {
-        return root.getZip().getEntry(path)  != null || isDirectory();
+        return isFile() || isDirectory();
     }
 
     @Override
-    public boolean isFile() throws ExistsException {
-        ZipEntry entry;
-        InputStream in;
-
-        entry = root.getZip().getEntry(path);
-        if (entry == null) {
-            return false;
-        }
-        if (entry.getSize() > 0) {
-            return true;
-        }
-        try {
-            in = root.getZip().getInputStream(entry);
-        } catch (IOException e) {
-            throw new ExistsException(this, e);
-        }
-        if (in == null) {
-            return false;
-        } else {
-            try {
-                in.close();
-            } catch (IOException e) {
-                throw new ExistsException(this, e);
-            }
-            return true;
-        }
+    public boolean isFile() {
+        return root.getEntry(path) != null;
     }
 
     @Override
@@ -194,33 +168,22 @@ public class ZipNode extends Node {
     	return false;
     }
 
+    /** also true for implicit directories, i.e. directories without zip entry */
     @Override
     public boolean isDirectory() {
-        ZipFile zip;
-
-        if (path.isEmpty()) {
-            return true;
-        }
-        zip = root.getZip();
-        if (zip.getEntry(path + "/") != null) {
-            return true;
-        }
-        // also contains implicit directories
-        return root.list(path).size() > 0;
+        return !isFile() && root.isDirectory(path);
     }
 
     @Override
     public InputStream createInputStream() throws FileNotFoundException, CreateInputStreamException {
-        ZipFile zip;
         ZipEntry entry;
 
-        zip = root.getZip();
-        entry = zip.getEntry(path);
+        entry = root.getEntry(path);
         if (entry == null) {
             throw new FileNotFoundException(this);
         }
         try {
-            return zip.getInputStream(entry);
+            return root.getZip().getInputStream(entry);
         } catch (IOException e) {
             throw new CreateInputStreamException(this, e);
         }
@@ -240,18 +203,14 @@ public class ZipNode extends Node {
         List<String> paths;
         List<ZipNode> result;
 
-        try {
-            if (isFile()) {
-                return null;
-            }
-        } catch (ExistsException e) {
-            throw new ListException(this, e);
+        if (isFile()) {
+            return null;
         }
-        paths = root.list(path);
-        if (paths.size() == 0 && root.getZip().getEntry(path + "/") == null) {
+        if (!root.isDirectory(path)) {
             throw new DirectoryNotFoundException(this);
         }
-        result = new ArrayList<>();
+        paths = root.list(path);
+        result = new ArrayList<>(paths.size());
         for (String path : paths) {
             result.add(root.node(path, null));
         }
@@ -18,13 +18,18 @@ package net.oneandone.sushi.fs.zip;
 import net.oneandone.sushi.archive.Archive;
 import net.oneandone.sushi.fs.Filesystem;
 import net.oneandone.sushi.fs.Root;
+import net.oneandone.sushi.util.Strings;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.jar.Manifest;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -33,9 +38,13 @@ public class ZipRoot implements Root<ZipNode> {
     private final ZipFilesystem filesystem;
     private final ZipFile zip;
 
+    /** null until first used */
+    private volatile Index index;
+
     public ZipRoot(ZipFilesystem filesystem, ZipFile zip) {
         this.filesystem = filesystem;
         this.zip = zip;
+        this.index = null;
     }
 
     @Override
@@ -77,36 +86,103 @@ public class ZipRoot implements Root<ZipNode> {
         return new ZipNode(this, path);
     }
 
-    // TODO: cache?
+    /** @return child paths of the specified directory, including implicit directories; empty if path is no directory */
     public List<String> list(String path) {
-        ZipEntry entry;
-        Enumeration<? extends ZipEntry> e;
-        String name;
-        String separator;
-        String prefix;
-        int length;
-        List<String> result;
-        int idx;
-
-        e = zip.entries();
-        separator = Filesystem.SEPARATOR_STRING;
-        prefix = path.length() == 0 ? "" : path + separator;
-        length = prefix.length();
-        result = new ArrayList<String>();
-        while (e.hasMoreElements()) {
-            entry = e.nextElement();
-            name = entry.getName();
-            if (name.length() > length && name.startsWith(prefix)) {
-                idx = name.indexOf(separator, length);
-                name = (idx == -1 ? name : name.substring(0, idx));
-                if (!result.contains(name) && name.length() > 0 /* happens for "/" entries ... */) {
-                    result.add(name);
+        Set<String> result;
+
+        result = index().directories.get(path);
+        return result == null ? new ArrayList<String>() : new ArrayList<>(result);
+    }
+
+    /** @return null if path is not a file */
+    public ZipEntry getEntry(String path) {
+        return index().files.get(path);
+    }
+
+    /** @return true for the root path, explicit and implicit directories */
+    public boolean isDirectory(String path) {
+        return index().directories.containsKey(path);
+    }
+
+    private Index index() {
+        Index result;
+
+        result = index;
+        if (result == null) {
+            synchronized (this) {
+                result = index;
+                if (result == null) {
+                    result = new Index(zip);
+                    index = result;
                 }
             }
         }
         return result;
     }
 
+    /** Directory tree of the zip file, built by scanning all entries once */
+    private static class Index {
+        /** maps paths to file entries */
+        public final Map<String, ZipEntry> files;
+
+        /** maps directory paths to child paths, in zip file order; a set because a file entry may also be a directory */
+        public final Map<String, Set<String>> directories;
+
+        public Index(ZipFile zip) {
+            Enumeration<? extends ZipEntry> e;
+            ZipEntry entry;
+            String name;
+
+            files = new HashMap<>();
+            directories = new HashMap<>();
+            directories.put("", new LinkedHashSet<String>());
+            e = zip.entries();
+            while (e.hasMoreElements()) {
+                entry = e.nextElement();
+                name = relative(entry.getName());
+                if (name.isEmpty()) {
+                    // happens for "/" entries ...
+                } else if (name.endsWith(Filesystem.SEPARATOR_STRING)) {
+                    directory(Strings.removeRight(name, Filesystem.SEPARATOR_STRING));
+                } else if (!files.containsKey(name)) {
+                    files.put(name, entry);
+                    directory(parent(name)).add(name);
+                }
+            }
+        }
+
+        /** @return children of the directory, adds it if necessary */
+        private Set<String> directory(String path) {
+            Set<String> result;
+
+            result = directories.get(path);
+            if (result == null) {
+                result = new LinkedHashSet<>();
+                directories.put(path, result);
+                directory(parent(path)).add(path);
+            }
+            return result;
+        }
+
+        /** Some zip tools write absolute entry names; strip the leading separators instead of dropping the entry. */
+        private static String relative(String name) {
+            int start;
+
+            start = 0;
+            while (start < name.length() && name.charAt(start) == Filesystem.SEPARATOR_CHAR) {
+                start++;
+            }
+            return name.substring(start);
+        }
+
+        private static String parent(String path) {
+            int idx;
+
+            idx = path.lastIndexOf(Filesystem.SEPARATOR_CHAR);
+            return idx == -1 ? "" : path.substring(0, idx);
+        }
+    }
+
     public Manifest readManifest() throws IOException {
         Manifest result;
 
@@ -19,9 +19,13 @@ import net.oneandone.sushi.fs.Node;
 
 import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.security.MessageDigest;
 
 /**
@@ -159,15 +163,37 @@ public class Buffer {
      * @return number of bytes actually copied
      */
     public long copy(InputStream in, OutputStream out) throws IOException {
-        return copy(in, out, Integer.MAX_VALUE);
+        return copy(in, out, Long.MAX_VALUE);
     }
     
     /**
-     * Copies up to max bytes.
+     * Copies up to max bytes. Bytes between plain file streams are transferred by the os, without using this buffer;
+     * this bypasses read and write methods of subclasses, so subclasses of the file streams use the buffer.
      * 
      * @return number of bytes actually copied
      */
     public long copy(InputStream in, OutputStream out, long max) throws IOException {
+        FileChannel src;
+        long position;
+        long size;
+        long all;
+
+        if (in.getClass() == FileInputStream.class && out.getClass() == FileOutputStream.class) {
+            src = ((FileInputStream) in).getChannel();
+            position = src.position();
+            size = src.size();
+            // pipes, devices and files in /proc report size 0
+            if (size > position) {
+                all = transfer(src, position, Math.min(max, size - position), ((FileOutputStream) out).getChannel());
+                src.position(position + all);
+                // the file may have grown
+                return all + copyBuffered(in, out, max - all);
+            }
+        }
+        return copyBuffered(in, out, max);
+    }
+
+    private long copyBuffered(InputStream in, OutputStream out, long max) throws IOException {
         int chunk;
         long all;
         long remaining;
@@ -187,4 +213,26 @@ public class Buffer {
         out.flush();
         return all;
     }
+
+    /**
+     * Copies count bytes starting at position, without passing them through the Java heap (e.g. sendfile on Linux).
+     * Does not modify the position of src. Dest has to be a blocking channel.
+     *
+     * @return number of bytes actually copied; less than count if src is shorter
+     */
+    public static long transfer(FileChannel src, long position, long count, WritableByteChannel dest) throws IOException {
+        long all;
+        long chunk;
+
+        all = 0;
+        while (all < count) {
+            chunk = src.transferTo(position + all, count - all, dest);
+            if (chunk <= 0) {
+                // end of file
+                break;
+            }
+            all += chunk;
+        }
+        return all;
+    }
 }
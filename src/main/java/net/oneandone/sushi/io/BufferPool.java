@@ -0,0 +1,154 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.sushi.io;
+
+import net.oneandone.sushi.fs.Node;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Hands out Buffers to concurrent threads. Allocated buffers are used exclusively by the caller until they are freed;
+ * freed buffers are kept for re-use, up to maxIdle buffers. Allocate and free don't block. </p>
+ */
+public class BufferPool {
+    public static final int DEFAULT_MAX_IDLE = 16;
+
+    private final int bufferSize;
+    private final int maxIdle;
+
+    private final Queue<Buffer> idle;
+    private final AtomicInteger idleCount;
+
+    public BufferPool() {
+        this(Buffer.DEFAULT_SIZE);
+    }
+
+    public BufferPool(int bufferSize) {
+        this(bufferSize, DEFAULT_MAX_IDLE);
+    }
+
+    public BufferPool(int bufferSize, int maxIdle) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize: " + bufferSize);
+        }
+        if (maxIdle < 0) {
+            throw new IllegalArgumentException("maxIdle: " + maxIdle);
+        }
+        this.bufferSize = bufferSize;
+        this.maxIdle = maxIdle;
+        this.idle = new ConcurrentLinkedQueue<>();
+        this.idleCount = new AtomicInteger();
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public int getMaxIdle() {
+        return maxIdle;
+    }
+
+    /** @return number of buffers currently available for re-use */
+    public int getIdle() {
+        return idleCount.get();
+    }
+
+    /** Use the result exclusively until you pass it to free. */
+    public Buffer allocate() {
+        Buffer result;
+
+        result = idle.poll();
+        if (result == null) {
+            return new Buffer(bufferSize);
+        }
+        idleCount.decrementAndGet();
+        return result;
+    }
+
+    /** Do not use the buffer after calling this method. */
+    public void free(Buffer buffer) {
+        if (buffer.size() != bufferSize) {
+            throw new IllegalArgumentException("foreign buffer: " + buffer.size());
+        }
+        if (idleCount.incrementAndGet() > maxIdle) {
+            idleCount.decrementAndGet();
+        } else {
+            idle.offer(buffer);
+        }
+    }
+
+    //-- convenience methods: allocate a buffer, delegate, and free the buffer
+
+    public byte[] readBytes(InputStream src) throws IOException {
+        Buffer buffer;
+
+        buffer = allocate();
+        try {
+            return buffer.readBytes(src);
+        } finally {
+            free(buffer);
+        }
+    }
+
+    public void digest(InputStream src, MessageDigest digest) throws IOException {
+        Buffer buffer;
+
+        buffer = allocate();
+        try {
+            buffer.digest(src, digest);
+        } finally {
+            free(buffer);
+        }
+    }
+
+    /**
+     * Copies all bytes.
+     *
+     * @return number of bytes actually copied
+     */
+    public long copy(InputStream in, Node dest) throws IOException {
+        Buffer buffer;
+
+        buffer = allocate();
+        try {
+            return buffer.copy(in, dest);
+        } finally {
+            free(buffer);
+        }
+    }
+
+    /**
+     * Copies all bytes.
+     *
+     * @return number of bytes actually copied
+     */
+    public long copy(InputStream in, OutputStream out) throws IOException {
+        Buffer buffer;
+
+        buffer = allocate();
+        try {
+            return buffer.copy(in, out);
+        } finally {
+            free(buffer);
+        }
+    }
+}
@@ -16,12 +16,21 @@
 package net.oneandone.sushi.util;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Output in unified format. See http://en.wikipedia.org/wiki/Diff
  */
 public class Diff {
+    public enum Algorithm {
+        /** shortest edit script */
+        MYERS,
+        /** anchors on lines that occur once on both sides, shortest edit script between the anchors */
+        PATIENCE
+    }
+
     public static String diff(String leftStr, String rightStr) {
         return diff(leftStr, rightStr, false, 0);
     }
@@ -35,6 +44,15 @@ public class Diff {
     }
 
     public static String diff(List<String> left, List<String> right, boolean range, int context, boolean escape) {
+        return diff(left, right, range, context, escape, Algorithm.MYERS);
+    }
+
+    public static String diff(List<String> left, List<String> right, boolean range, int context, boolean escape,
+                              Algorithm algorithm) {
+        Map<String, Integer> ids;
+        int[] leftIds;
+        int[] rightIds;
+        int[] matches;
         List<String> commons;
         List<Chunk> chunks;
         Chunk chunk;
@@ -42,8 +60,17 @@ public class Diff {
         int ci;
         Chunk last;
 
-        commons = Lcs.compute(left, right);
-        chunks = diff(left, commons, right);
+        ids = new HashMap<>();
+        leftIds = Myers.intern(left, ids);
+        rightIds = Myers.intern(right, ids);
+        matches = algorithm == Algorithm.PATIENCE ? Myers.patience(leftIds, rightIds) : Myers.matches(leftIds, rightIds);
+        commons = new ArrayList<>();
+        for (int i = 0; i < matches.length; i++) {
+            if (matches[i] != -1) {
+                commons.add(left.get(i));
+            }
+        }
+        chunks = chunks(left, matches, right);
         result = new StringBuilder();
         last = null;
         for (int c = 0; c < chunks.size(); c++) {
@@ -147,6 +174,45 @@ public class Diff {
         return result;
     }
 
+    /** @param matches as returned by Myers */
+    private static List<Chunk> chunks(List<String> left, int[] matches, List<String> right) {
+        List<Chunk> result;
+        Chunk chunk;
+        int li;
+        int ri;
+        int ci;
+        int next;
+
+        result = new ArrayList<>();
+        li = 0;
+        ri = 0;
+        ci = 0;
+        while (li <= left.size()) {
+            next = li;
+            while (next < left.size() && matches[next] == -1) {
+                next++;
+            }
+            chunk = null;
+            if (next > li) {
+                chunk = new Chunk(li, ci, ri);
+                chunk.delete = next - li;
+                result.add(chunk);
+            }
+            for (int end = next < left.size() ? matches[next] : right.size(); ri < end; ri++) {
+                if (chunk == null) {
+                    chunk = new Chunk(next, ci, ri);
+                    result.add(chunk);
+                }
+                chunk.add.add(right.get(ri));
+            }
+            // skip the common line
+            li = next + 1;
+            ri++;
+            ci++;
+        }
+        return result;
+    }
+
     private static void addRange(StringBuilder result, List<Chunk> chunks, int ofs, int cmax, int context) {
         Chunk first;
         Chunk prev;
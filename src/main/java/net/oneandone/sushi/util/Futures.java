@@ -0,0 +1,98 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.sushi.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/** Runs tasks on an executor and collects their results in submission order. */
+public class Futures {
+    /**
+     * @return futures in the order of tasks
+     * @throws RejectedExecutionException after cancelling the tasks submitted so far
+     */
+    public static <T> List<Future<T>> submitAll(ExecutorService executor, Collection<? extends Callable<T>> tasks) {
+        List<Future<T>> result;
+
+        result = new ArrayList<>(tasks.size());
+        try {
+            for (Callable<T> task : tasks) {
+                result.add(executor.submit(task));
+            }
+        } catch (RejectedExecutionException e) {
+            cancelAll(result);
+            throw e;
+        }
+        return result;
+    }
+
+    /**
+     * Waits for all futures. Errors are thrown immediately; runtime exceptions are thrown after cancelling all futures.
+     * Failures of the specified type are collected: the first is thrown once all futures are done, with the others
+     * added as suppressed exceptions.
+     *
+     * @return results in the order of futures
+     * @throws InterruptedException after cancelling all futures; the interrupted flag is cleared
+     */
+    public static <T, E extends Exception> List<T> getAll(List<Future<T>> futures, Class<E> failureType)
+            throws E, InterruptedException {
+        List<T> result;
+        E failure;
+        Throwable cause;
+
+        result = new ArrayList<>(futures.size());
+        failure = null;
+        for (Future<T> future : futures) {
+            try {
+                result.add(future.get());
+            } catch (InterruptedException e) {
+                cancelAll(futures);
+                throw e;
+            } catch (ExecutionException e) {
+                cause = e.getCause();
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                } else if (cause instanceof RuntimeException) {
+                    cancelAll(futures);
+                    throw (RuntimeException) cause;
+                } else if (!failureType.isInstance(cause)) {
+                    cancelAll(futures);
+                    throw new IllegalStateException("unexpected exception", cause);
+                } else if (failure == null) {
+                    failure = failureType.cast(cause);
+                } else {
+                    failure.addSuppressed(cause);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return result;
+    }
+
+    public static void cancelAll(Collection<? extends Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+}
@@ -18,7 +18,7 @@ package net.oneandone.sushi.util;
 import java.util.ArrayList;
 import java.util.List;
 
-/** Longest common subsequence. http://en.wikipedia.org/wiki/Diff */
+/** Longest common subsequence. http://en.wikipedia.org/wiki/Diff. Quadratic time and space, see Myers for large inputs. */
 
 public class Lcs {
     private static final List<?> EMPTY = new ArrayList<>(0);
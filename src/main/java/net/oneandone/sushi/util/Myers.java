@@ -0,0 +1,346 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.sushi.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Longest common subsequence of two int sequences (typically interned lines) with Myers' O((N+M)D) algorithm in
+ * linear space, i.e. divide and conquer on the middle snake. See "An O(ND) Difference Algorithm and Its Variations".
+ * Optionally, lines that occur exactly once on both sides are matched first (patience diff), which tends to align
+ * diffs of source code with the programmer's intention.
+ */
+public class Myers {
+    /** @return result[i] is the index in right matched with left[i], or -1 if left[i] is deleted */
+    public static int[] matches(int[] left, int[] right) {
+        return new Myers(left, right, false).run();
+    }
+
+    /** Like matches, but uses unique lines as anchors first */
+    public static int[] patience(int[] left, int[] right) {
+        return new Myers(left, right, true).run();
+    }
+
+    /** Maps equal objects to equal ids; the same map has to be used for both sides. */
+    public static <T> int[] intern(List<T> lst, Map<T, Integer> ids) {
+        int[] result;
+        Integer id;
+        int i;
+
+        result = new int[lst.size()];
+        i = 0;
+        for (T obj : lst) {
+            id = ids.get(obj);
+            if (id == null) {
+                id = ids.size();
+                ids.put(obj, id);
+            }
+            result[i++] = id;
+        }
+        return result;
+    }
+
+    //--
+
+    private final int[] a;
+    private final int[] b;
+    private final boolean patience;
+    private final int[] result;
+
+    /** forward and backward furthest reaching x per diagonal, indexed by diagonal + offset */
+    private final int[] forward;
+    private final int[] backward;
+    private final int offset;
+
+    /** middle snake: x, y, u, v */
+    private final int[] snake;
+
+    private Myers(int[] a, int[] b, boolean patience) {
+        int max;
+
+        this.a = a;
+        this.b = b;
+        this.patience = patience;
+        this.result = new int[a.length];
+        Arrays.fill(result, -1);
+        max = (a.length + b.length + 1) / 2;
+        this.offset = max + 1;
+        this.forward = new int[2 * max + 3];
+        this.backward = new int[2 * max + 3];
+        this.snake = new int[4];
+    }
+
+    private int[] run() {
+        boolean[] changedA;
+        boolean[] changedB;
+        int j;
+
+        compare(0, a.length, 0, b.length);
+        changedA = new boolean[a.length];
+        changedB = new boolean[b.length];
+        Arrays.fill(changedB, true);
+        for (int i = 0; i < a.length; i++) {
+            if (result[i] == -1) {
+                changedA[i] = true;
+            } else {
+                changedB[result[i]] = false;
+            }
+        }
+        shift(a, changedA);
+        shift(b, changedB);
+        j = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (changedA[i]) {
+                result[i] = -1;
+            } else {
+                while (changedB[j]) {
+                    j++;
+                }
+                result[i] = j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Moves runs of changed lines down as long as the line after the run equals its first line. The result has the same
+     * size, but ambiguous changes are placed like GNU diff does, and adjacent runs are merged.
+     */
+    private static void shift(int[] lines, boolean[] changed) {
+        int start;
+        int end;
+
+        start = 0;
+        while (start < lines.length) {
+            if (!changed[start]) {
+                start++;
+                continue;
+            }
+            end = start;
+            while (end < lines.length && changed[end]) {
+                end++;
+            }
+            while (end < lines.length && lines[start] == lines[end]) {
+                changed[start++] = false;
+                changed[end++] = true;
+                while (end < lines.length && changed[end]) {
+                    end++;
+                }
+            }
+            start = end;
+        }
+    }
+
+    private void compare(int aStart, int aEnd, int bStart, int bEnd) {
+        int x;
+        int y;
+        int u;
+        int v;
+
+        while (aStart < aEnd && bStart < bEnd && a[aStart] == b[bStart]) {
+            result[aStart++] = bStart++;
+        }
+        while (aStart < aEnd && bStart < bEnd && a[aEnd - 1] == b[bEnd - 1]) {
+            result[--aEnd] = --bEnd;
+        }
+        if (aStart == aEnd || bStart == bEnd) {
+            return;
+        }
+        if (patience && anchors(aStart, aEnd, bStart, bEnd)) {
+            return;
+        }
+        middleSnake(aStart, aEnd, bStart, bEnd);
+        x = snake[0];
+        y = snake[1];
+        u = snake[2];
+        v = snake[3];
+        for (int i = x; i < u; i++) {
+            result[i] = y + i - x;
+        }
+        compare(aStart, x, bStart, y);
+        compare(u, aEnd, v, bEnd);
+    }
+
+    /**
+     * Stores the middle snake of an optimal path in snake, in absolute coordinates. Assumes that the first and
+     * the last elements differ, so the edit distance is at least 2.
+     */
+    private void middleSnake(int aStart, int aEnd, int bStart, int bEnd) {
+        int n;
+        int m;
+        int delta;
+        boolean odd;
+        int max;
+        int x;
+        int y;
+        int x0;
+
+        n = aEnd - aStart;
+        m = bEnd - bStart;
+        delta = n - m;
+        odd = (delta & 1) != 0;
+        max = (n + m + 1) / 2;
+        forward[offset + 1] = 0;
+        backward[offset + 1] = 0;
+        for (int d = 0; d <= max; d++) {
+            for (int k = -d; k <= d; k += 2) {
+                if (k == -d || (k != d && forward[offset + k - 1] < forward[offset + k + 1])) {
+                    x = forward[offset + k + 1];
+                } else {
+                    x = forward[offset + k - 1] + 1;
+                }
+                y = x - k;
+                x0 = x;
+                while (x < n && y < m && a[aStart + x] == b[bStart + y]) {
+                    x++;
+                    y++;
+                }
+                forward[offset + k] = x;
+                if (odd && delta - k >= -(d - 1) && delta - k <= d - 1 && x + backward[offset + delta - k] >= n) {
+                    setSnake(aStart + x0, bStart + x0 - k, aStart + x, bStart + y);
+                    return;
+                }
+            }
+            for (int k = -d; k <= d; k += 2) {
+                if (k == -d || (k != d && backward[offset + k - 1] < backward[offset + k + 1])) {
+                    x = backward[offset + k + 1];
+                } else {
+                    x = backward[offset + k - 1] + 1;
+                }
+                y = x - k;
+                x0 = x;
+                while (x < n && y < m && a[aEnd - 1 - x] == b[bEnd - 1 - y]) {
+                    x++;
+                    y++;
+                }
+                backward[offset + k] = x;
+                if (!odd && delta - k >= -d && delta - k <= d && x + forward[offset + delta - k] >= n) {
+                    setSnake(aEnd - x, bEnd - y, aEnd - x0, bEnd - (x0 - k));
+                    return;
+                }
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    private void setSnake(int x, int y, int u, int v) {
+        snake[0] = x;
+        snake[1] = y;
+        snake[2] = u;
+        snake[3] = v;
+    }
+
+    //-- patience
+
+    /** @return false if there are no unique lines to anchor on */
+    private boolean anchors(int aStart, int aEnd, int bStart, int bEnd) {
+        Map<Integer, int[]> occurrences;
+        int[] entry;
+        List<int[]> unique;
+        List<int[]> lis;
+        int prevA;
+        int prevB;
+
+        // entry: count in a, index in a, count in b, index in b
+        occurrences = new HashMap<>();
+        for (int i = aStart; i < aEnd; i++) {
+            entry = occurrences.get(a[i]);
+            if (entry == null) {
+                entry = new int[4];
+                occurrences.put(a[i], entry);
+            }
+            entry[0]++;
+            entry[1] = i;
+        }
+        for (int i = bStart; i < bEnd; i++) {
+            entry = occurrences.get(b[i]);
+            if (entry != null) {
+                entry[2]++;
+                entry[3] = i;
+            }
+        }
+        unique = new ArrayList<>();
+        for (int i = aStart; i < aEnd; i++) {
+            entry = occurrences.get(a[i]);
+            if (entry[0] == 1 && entry[2] == 1) {
+                unique.add(new int[] { entry[1], entry[3] });
+            }
+        }
+        if (unique.isEmpty()) {
+            return false;
+        }
+        lis = longestIncreasing(unique);
+        prevA = aStart;
+        prevB = bStart;
+        for (int[] anchor : lis) {
+            compare(prevA, anchor[0], prevB, anchor[1]);
+            result[anchor[0]] = anchor[1];
+            prevA = anchor[0] + 1;
+            prevB = anchor[1] + 1;
+        }
+        compare(prevA, aEnd, prevB, bEnd);
+        return true;
+    }
+
+    /** @param pairs sorted by [0]; @return longest subsequence that is increasing in [1] as well (patience sorting) */
+    private static List<int[]> longestIncreasing(List<int[]> pairs) {
+        int[] tails;
+        int[] previous;
+        int length;
+        int low;
+        int high;
+        int middle;
+        int[] lis;
+        List<int[]> result;
+        int i;
+
+        tails = new int[pairs.size()];
+        previous = new int[pairs.size()];
+        length = 0;
+        for (i = 0; i < pairs.size(); i++) {
+            low = 0;
+            high = length;
+            while (low < high) {
+                middle = (low + high) >>> 1;
+                if (pairs.get(tails[middle])[1] < pairs.get(i)[1]) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+        lis = new int[length];
+        i = tails[length - 1];
+        for (int j = length - 1; j >= 0; j--) {
+            lis[j] = i;
+            i = previous[i];
+        }
+        result = new ArrayList<>(length);
+        for (int idx : lis) {
+            result.add(pairs.get(idx));
+        }
+        return result;
+    }
+}
@@ -15,6 +15,9 @@
  */
 package net.oneandone.sushi.util;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.Map;
 
 public class Substitution {
@@ -35,6 +38,43 @@ public class Substitution {
 		this.suffix = suffix;
 		this.escape = escape;
 	}
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public String getSuffix() {
+        return suffix;
+    }
+
+    public char getEscape() {
+        return escape;
+    }
+
+    /** Streaming version of apply(String, Map): memory is bounded by the longest variable name. Does not close src or dest. */
+    public void apply(Reader src, Writer dest, Map<String, String> variables) throws IOException, SubstitutionException {
+        SubstitutionWriter filter;
+        char[] buffer;
+        int count;
+
+        filter = new SubstitutionWriter(dest, this, variables);
+        buffer = new char[4096];
+        try {
+            while (true) {
+                count = src.read(buffer);
+                if (count == -1) {
+                    break;
+                }
+                filter.write(buffer, 0, count);
+            }
+            filter.finish();
+        } catch (IOException e) {
+            if (e.getCause() instanceof SubstitutionException) {
+                throw (SubstitutionException) e.getCause();
+            }
+            throw e;
+        }
+    }
 	
 	public String apply(String content, Map<String, String> variables) throws SubstitutionException {
 		StringBuilder builder;
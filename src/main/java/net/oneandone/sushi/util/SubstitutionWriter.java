@@ -0,0 +1,253 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.sushi.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * Applies a substitution to all characters written through it, with the same result as Substitution.apply on the
+ * complete content. Memory is bounded by the longest variable name. Substitution errors are reported as IOExceptions
+ * with a SubstitutionException cause. Call finish or close to detect a missing end marker.
+ */
+public class SubstitutionWriter extends Writer {
+    private final Writer out;
+    private final Map<String, String> variables;
+
+    private final String prefix;
+    private final String suffix;
+
+    /** escape + prefix */
+    private final String escaped;
+
+    /** variable names longer than this cannot be defined */
+    private final int maxName;
+
+    /** characters not yet written because they might start an escaped or unescaped prefix; at most escaped.length() */
+    private final StringBuilder window;
+
+    /** null when copying text, otherwise the variable name seen so far - possibly followed by a partial suffix */
+    private StringBuilder name;
+
+    /** true if the variable name exceeded maxName; name contains the beginning only */
+    private boolean truncated;
+
+    /** number of suffix characters matched after a truncated name */
+    private int suffixMatched;
+
+    private boolean closed;
+
+    public SubstitutionWriter(Writer out, Substitution substitution, Map<String, String> variables) {
+        int max;
+
+        this.out = out;
+        this.variables = variables;
+        this.prefix = substitution.getPrefix();
+        this.suffix = substitution.getSuffix();
+        this.escaped = substitution.getEscape() + prefix;
+        max = 0;
+        for (String key : variables.keySet()) {
+            max = Math.max(max, key.length());
+        }
+        this.maxName = max;
+        this.window = new StringBuilder(escaped.length());
+        this.name = null;
+        this.truncated = false;
+        this.suffixMatched = 0;
+        this.closed = false;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        ensureOpen();
+        if (name != null) {
+            variable((char) c);
+        } else {
+            window.append((char) c);
+            text(false);
+        }
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        for (int i = 0; i < len; i++) {
+            write(cbuf[off + i]);
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        for (int i = 0; i < len; i++) {
+            write(str.charAt(off + i));
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /** Writes pending characters and checks for a missing end marker. Does not close the underlying writer. */
+    public void finish() throws IOException {
+        ensureOpen();
+        closed = true;
+        if (name != null) {
+            throw error("missing end marker");
+        }
+        text(true);
+    }
+
+    /** Finishes and closes the underlying writer. */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            out.close();
+            return;
+        }
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    //--
+
+    /** @param eof true to write characters that cannot become a prefix anymore */
+    private void text(boolean eof) throws IOException {
+        while (window.length() > 0) {
+            if (startsWith(escaped)) {
+                out.write(prefix);
+                window.delete(0, escaped.length());
+            } else if (startsWith(prefix)) {
+                window.delete(0, prefix.length());
+                name = new StringBuilder();
+                truncated = false;
+                suffixMatched = 0;
+                // move remaining characters into the variable name
+                while (window.length() > 0 && name != null) {
+                    variable(window.charAt(0));
+                    window.deleteCharAt(0);
+                }
+            } else if (!eof && (isProperPrefix(escaped) || isProperPrefix(prefix))) {
+                return;
+            } else {
+                out.write(window.charAt(0));
+                window.deleteCharAt(0);
+            }
+        }
+    }
+
+    private void variable(char c) throws IOException {
+        String var;
+        String replaced;
+
+        if (truncated) {
+            suffixMatched = match(suffixMatched, c);
+            if (suffixMatched == suffix.length()) {
+                throw error("undefined variable: " + name + "...");
+            }
+            return;
+        }
+        name.append(c);
+        if (endsWith(name, suffix)) {
+            var = name.substring(0, name.length() - suffix.length());
+            replaced = variables.get(var);
+            if (replaced == null) {
+                throw error("undefined variable: " + var);
+            }
+            out.write(replaced);
+            name = null;
+        } else if (name.length() > maxName + suffix.length()) {
+            // cannot be a defined variable - keep looking for the suffix without storing the name
+            truncated = true;
+            suffixMatched = 0;
+            for (int i = name.length() - suffix.length() + 1; i < name.length(); i++) {
+                suffixMatched = match(suffixMatched, name.charAt(i));
+            }
+            name.setLength(maxName);
+        }
+    }
+
+    /** @return number of suffix characters matched after c; suffixes are short, so simply re-check the tail */
+    private int match(int matched, char c) {
+        String seen;
+
+        seen = suffix.substring(0, matched) + c;
+        for (int i = 0; i < seen.length(); i++) {
+            if (suffix.startsWith(seen.substring(i))) {
+                return seen.length() - i;
+            }
+        }
+        return 0;
+    }
+
+    private boolean startsWith(String str) {
+        int len;
+
+        len = str.length();
+        if (window.length() < len) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (window.charAt(i) != str.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isProperPrefix(String str) {
+        int len;
+
+        len = window.length();
+        if (len >= str.length()) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (window.charAt(i) != str.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean endsWith(StringBuilder builder, String str) {
+        int ofs;
+
+        ofs = builder.length() - str.length();
+        if (ofs < 0) {
+            return false;
+        }
+        for (int i = 0; i < str.length(); i++) {
+            if (builder.charAt(ofs + i) != str.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static IOException error(String msg) {
+        return new IOException(msg, new SubstitutionException(msg));
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("closed");
+        }
+    }
+}
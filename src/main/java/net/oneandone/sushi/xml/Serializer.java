@@ -41,6 +41,14 @@ import java.io.StringWriter;
 public class Serializer {
     private static final TransformerFactory FACTORY = TransformerFactory.newInstance();
 
+    /** TransformerFactory is not thread-safe; a factory per thread compiles stylesheets without a global lock */
+    private static final ThreadLocal<TransformerFactory> COMPILERS = new ThreadLocal<TransformerFactory>() {
+        @Override
+        protected TransformerFactory initialValue() {
+            return TransformerFactory.newInstance();
+        }
+    };
+
     private final Transformer format;
     private final Transformer dumper;
 
@@ -251,7 +259,7 @@ public class Serializer {
     }
 
     public static Templates templates(Source src) throws TransformerConfigurationException {
-        return FACTORY.newTemplates(src);
+        return COMPILERS.get().newTemplates(src);
     }
 
     private static synchronized Transformer createDumper() {
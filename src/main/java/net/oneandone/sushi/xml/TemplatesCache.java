@@ -0,0 +1,153 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.sushi.xml;
+
+import net.oneandone.sushi.fs.GetLastModifiedException;
+import net.oneandone.sushi.fs.Node;
+import org.xml.sax.InputSource;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.sax.SAXSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compiled stylesheets, keyed by node uri. An entry is recompiled if the last modified date of its node has changed;
+ * the least recently used entry is evicted if the cache is full. Thread-safe, like Templates.
+ */
+public class TemplatesCache {
+    public static final int DEFAULT_MAX_SIZE = 32;
+
+    private final Map<String, Cached> entries;
+    /** guarded by entries */
+    private int maxSize;
+    private int compiled;
+
+    public TemplatesCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public TemplatesCache(int maxSize) {
+        checkMaxSize(maxSize);
+        this.entries = new LinkedHashMap<String, Cached>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+                return size() > TemplatesCache.this.maxSize;
+            }
+        };
+        this.maxSize = maxSize;
+        this.compiled = 0;
+    }
+
+    public int getMaxSize() {
+        synchronized (entries) {
+            return maxSize;
+        }
+    }
+
+    /** Evicts least recently used entries if the cache holds more than maxSize. */
+    public void setMaxSize(int maxSize) {
+        Iterator<String> iter;
+
+        checkMaxSize(maxSize);
+        synchronized (entries) {
+            this.maxSize = maxSize;
+            iter = entries.keySet().iterator();
+            while (entries.size() > maxSize) {
+                iter.next();
+                iter.remove();
+            }
+        }
+    }
+
+    private static void checkMaxSize(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize: " + maxSize);
+        }
+    }
+
+    /** Nodes without last modified date are compiled on every call. */
+    public Templates get(Node node) throws IOException, TransformerConfigurationException {
+        String key;
+        long modified;
+        Cached entry;
+        Templates result;
+
+        try {
+            modified = node.getLastModified();
+        } catch (GetLastModifiedException e) {
+            return compile(node);
+        }
+        key = node.getURI().toString();
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null && entry.lastModified == modified) {
+            return entry.templates;
+        }
+        // compile outside the lock; concurrent misses for the same node may compile twice
+        result = compile(node);
+        synchronized (entries) {
+            entries.put(key, new Cached(modified, result));
+        }
+        return result;
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /** @return number of compilations */
+    public int getCompiled() {
+        synchronized (entries) {
+            return compiled;
+        }
+    }
+
+    private Templates compile(Node node) throws IOException, TransformerConfigurationException {
+        Templates result;
+
+        try (InputStream in = node.createInputStream()) {
+            result = Serializer.templates(new SAXSource(new InputSource(in)));
+        }
+        synchronized (entries) {
+            compiled++;
+        }
+        return result;
+    }
+
+    private static class Cached {
+        public final long lastModified;
+        public final Templates templates;
+
+        public Cached(long lastModified, Templates templates) {
+            this.lastModified = lastModified;
+            this.templates = templates;
+        }
+    }
+}
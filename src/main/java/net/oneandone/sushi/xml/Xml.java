@@ -15,39 +15,121 @@
  */
 package net.oneandone.sushi.xml;
 
+import net.oneandone.sushi.fs.Node;
+import net.oneandone.sushi.util.Futures;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
 /**
- * <p>Xml processing stuff. Not thread-save - every thread should have it's own instance.
+ * <p>Xml processing stuff. Thread-safe: builders, selectors and serializers are not, so every thread gets its own instances.
  * Creates members lazy because they are resource comsuming. </p>
  */
 public class Xml {
-    private Builder builder;
-    private Selector selector;
-    private Serializer serializer;
-    
+    private final ThreadLocal<Builder> builder;
+    private final ThreadLocal<Selector> selector;
+    private final ThreadLocal<Serializer> serializer;
+    private final TemplatesCache templates;
+
     public Xml() {
-        this.builder = null;
-        this.selector = null;
-        this.serializer = null;
+        this(TemplatesCache.DEFAULT_MAX_SIZE);
+    }
+
+    /** @param templatesMaxSize number of compiled stylesheets kept by getTemplates() */
+    public Xml(int templatesMaxSize) {
+        this.builder = new ThreadLocal<Builder>() {
+            @Override
+            protected Builder initialValue() {
+                return new Builder();
+            }
+        };
+        this.selector = new ThreadLocal<Selector>() {
+            @Override
+            protected Selector initialValue() {
+                return new Selector();
+            }
+        };
+        this.serializer = new ThreadLocal<Serializer>() {
+            @Override
+            protected Serializer initialValue() {
+                return new Serializer();
+            }
+        };
+        this.templates = new TemplatesCache(templatesMaxSize);
     }
 
+    /** @return builder of the current thread; do not pass it to other threads */
     public Builder getBuilder() {
-        if (builder == null) {
-            builder = new Builder();
-        }
-        return builder;
+        return builder.get();
     }
 
+    /** @return selector of the current thread; do not pass it to other threads */
     public Selector getSelector() {
-        if (selector == null) {
-            selector = new Selector();
-        }
-        return selector;
+        return selector.get();
     }
 
+    /** @return serializer of the current thread; do not pass it to other threads */
     public Serializer getSerializer() {
-        if (serializer == null) {
-            serializer = new Serializer();
+        return serializer.get();
+    }
+
+    /** @return compiled stylesheets, shared by all threads; use setMaxSize to resize it */
+    public TemplatesCache getTemplates() {
+        return templates;
+    }
+
+    //--
+
+    /**
+     * Transforms every key node into its value node, each with its own transformer. Runs concurrently if an executor is
+     * specified; the executor is not shut down. If multiple transformations fail, the first exception is thrown, with
+     * the others added as suppressed exceptions.
+     *
+     * @param executor null to transform sequentially
+     */
+    public void xslt(final Templates templates, Map<? extends Node, ? extends Node> srcToDest, ExecutorService executor)
+            throws IOException, TransformerException {
+        List<Callable<Void>> tasks;
+        List<Future<Void>> futures;
+
+        if (executor == null) {
+            for (Map.Entry<? extends Node, ? extends Node> entry : srcToDest.entrySet()) {
+                entry.getKey().xslt(templates, entry.getValue());
+            }
+            return;
+        }
+        tasks = new ArrayList<>(srcToDest.size());
+        for (final Map.Entry<? extends Node, ? extends Node> entry : srcToDest.entrySet()) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException, TransformerException {
+                    entry.getKey().xslt(templates, entry.getValue());
+                    return null;
+                }
+            });
+        }
+        try {
+            futures = Futures.submitAll(executor, tasks);
+        } catch (RejectedExecutionException e) {
+            throw new IOException("executor rejected transformation", e);
+        }
+        try {
+            Futures.getAll(futures, Exception.class);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", e);
+        } catch (IOException | TransformerException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
         }
-        return serializer;
     }
 }
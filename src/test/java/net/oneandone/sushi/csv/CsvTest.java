@@ -17,12 +17,22 @@ package net.oneandone.sushi.csv;
 
 import net.oneandone.sushi.fs.Node;
 import net.oneandone.sushi.fs.World;
+import net.oneandone.sushi.fs.file.FileNode;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -68,6 +78,225 @@ public class CsvTest {
         }
     }
 
+    @Test
+    public void readerMultiline() throws IOException {
+        List<Line> lines;
+
+        lines = stream("a\n\"b\nc\";\"d\r\n\"\"e\"\r\nf");
+        assertEquals(3, lines.size());
+        assertEquals(Arrays.asList("a"), lines.get(0).get(0));
+        assertEquals(Arrays.asList("b\nc"), lines.get(1).get(0));
+        assertEquals(Arrays.asList("d\r\n\"e"), lines.get(1).get(1));
+        assertEquals(Arrays.asList("f"), lines.get(2).get(0));
+    }
+
+    @Test
+    public void readerErrors() throws IOException {
+        List<Line> lines;
+        String msg;
+
+        lines = new ArrayList<>();
+        try (CsvReader reader = new CsvReader(FMT, new StringReader("a\nb\"c\nd\n\"e"), "test")) {
+            try {
+                while (true) {
+                    Line line = reader.next();
+                    if (line == null) {
+                        break;
+                    }
+                    lines.add(line);
+                }
+                fail();
+            } catch (CsvExceptions e) {
+                msg = e.getMessage();
+                assertTrue(msg, msg.startsWith("test:2: "));
+                assertTrue(msg, msg.contains("\ntest:4: quote not closed"));
+            }
+            assertEquals(2, reader.getErrorCount());
+            assertEquals(null, reader.next());
+        }
+        assertEquals(2, lines.size());
+    }
+
+    @Test
+    public void readerMaxRecordLength() throws IOException {
+        try (CsvReader reader = new CsvReader(FMT, new StringReader("\"a\nbcdef\nghi\n"), "test")) {
+            reader.setMaxRecordLength(5);
+            try {
+                reader.next();
+                fail();
+            } catch (CsvExceptions e) {
+                assertEquals("test:1: quote not closed within 5 characters", e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void readerMaxRecordLengthResumes() throws IOException {
+        try (CsvReader reader = new CsvReader(FMT, new StringReader("a\n\"bcdefgh\nij\n\";z\nm;n\n\"o\"\n"), "test")) {
+            reader.setMaxRecordLength(5);
+            assertEquals(Arrays.asList("a"), reader.next().get(0));
+            assertEquals(Arrays.asList("m"), reader.next().get(0));
+            assertEquals(5, reader.getLine());
+            assertEquals(Arrays.asList("o"), reader.next().get(0));
+            try {
+                reader.next();
+                fail();
+            } catch (CsvExceptions e) {
+                assertEquals("test:2: quote not closed within 5 characters", e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void readerCells() throws IOException {
+        Cells cells;
+
+        cells = new Cells(FMT);
+        try (CsvReader reader = new CsvReader(FMT, new StringReader("a;b\n\"c\nd\"\n"), "test")) {
+            assertSame(cells, reader.next(cells));
+            assertEquals(2, cells.size());
+            assertEquals("b", cells.getOne(1));
+            assertSame(cells, reader.next(cells));
+            assertEquals("c\nd", cells.getOne(0));
+            assertEquals(2, reader.getLine());
+            assertNull(reader.next(cells));
+        }
+    }
+
+    @Test
+    public void writerRoundTrip() throws IOException {
+        StringWriter dest;
+        List<Line> lines;
+
+        dest = new StringWriter();
+        try (CsvWriter writer = new CsvWriter(FMT, dest)) {
+            writer.write(Line.create("1", "a\nb"));
+            writer.write(Line.create("x;y", "\""));
+            assertEquals(2, writer.getCount());
+        }
+        lines = stream(dest.toString());
+        assertEquals(2, lines.size());
+        assertEquals(Arrays.asList("a\nb"), lines.get(0).get(1));
+        assertEquals(Arrays.asList("x;y"), lines.get(1).get(0));
+        assertEquals(Arrays.asList("\""), lines.get(1).get(1));
+    }
+
+    @Test
+    public void parallel() throws IOException {
+        Random random;
+        StringBuilder builder;
+        FileNode file;
+        String[] pieces = { "a", "b\u00e4", ";", "|", "\"", "\"\"", "\\", "\n", "\r", "\r\n", "\n\r", "NULL", "\"x\ny\";z" };
+        ForkJoinPool pool;
+
+        random = new Random(3);
+        pool = new ForkJoinPool(4);
+        try {
+            for (int i = 0; i < 20; i++) {
+                builder = new StringBuilder();
+                for (int j = 0; j < 300; j++) {
+                    builder.append(pieces[random.nextInt(pieces.length)]);
+                    if (random.nextInt(4) == 0) {
+                        builder.append('\n');
+                    }
+                }
+                file = WORLD.getTemp().createTempFile();
+                file.writeString(builder.toString());
+                for (int chunkSize : new int[] { 1, 7, 50 }) {
+                    assertEquals(sequential(file), parallel(new ParallelCsvReader(FMT, pool).setChunkSize(chunkSize), file));
+                }
+                file.deleteFile();
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void parallelConcurrent() throws IOException {
+        StringBuilder builder;
+        FileNode file;
+        ForkJoinPool pool;
+        ParallelCsvReader reader;
+        final AtomicInteger sum;
+        Csv csv;
+
+        builder = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            builder.append(i).append(";\"multi\nline\"\n");
+        }
+        file = WORLD.getTemp().createTempFile();
+        file.writeString(builder.toString());
+        pool = new ForkJoinPool(4);
+        try {
+            reader = new ParallelCsvReader(FMT, pool).setChunkSize(100);
+            sum = new AtomicInteger();
+            reader.read(file, new ParallelCsvReader.Sink() {
+                @Override
+                public void add(Line line) {
+                    sum.addAndGet(Integer.parseInt(line.getOne(0)));
+                }
+            }, false);
+            assertEquals(999 * 1000 / 2, sum.get());
+            csv = reader.read(file);
+            assertEquals(1000, csv.size());
+            assertEquals("999", csv.get(999).getOne(0));
+            assertEquals("multi\nline", csv.get(999).getOne(1));
+        } finally {
+            pool.shutdown();
+            file.deleteFile();
+        }
+    }
+
+    private static String sequential(FileNode file) throws IOException {
+        StringBuilder result;
+        Line line;
+
+        result = new StringBuilder();
+        try (CsvReader reader = CsvReader.open(FMT, file)) {
+            while (true) {
+                try {
+                    line = reader.next();
+                } catch (CsvExceptions e) {
+                    return result.append(e.getMessage()).toString();
+                }
+                if (line == null) {
+                    return result.toString();
+                }
+                result.append(FMT.write(line));
+            }
+        }
+    }
+
+    private static String parallel(ParallelCsvReader reader, FileNode file) throws IOException {
+        final StringBuilder result;
+
+        result = new StringBuilder();
+        try {
+            reader.read(file, new ParallelCsvReader.Sink() {
+                @Override
+                public void add(Line line) {
+                    result.append(FMT.write(line));
+                }
+            }, true);
+        } catch (CsvExceptions e) {
+            result.append(e.getMessage());
+        }
+        return result.toString();
+    }
+
+    private List<Line> stream(String str) throws IOException {
+        List<Line> result;
+
+        result = new ArrayList<>();
+        try (CsvReader reader = CsvReader.open(FMT, node(str))) {
+            for (Line line : reader) {
+                result.add(line);
+            }
+        }
+        return result;
+    }
+
     //--
 
     private Csv read(String str) throws IOException {
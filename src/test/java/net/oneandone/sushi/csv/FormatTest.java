@@ -21,6 +21,8 @@ import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class FormatTest {
     private final Format format = new Format(false, '/', '\'');
@@ -60,6 +62,7 @@ public class FormatTest {
         cell("/'", "''''\n", "'");
         cell("/|", "'/|'\n", "|");
         cell("/;", "'/;'\n", ";");
+        cell("'a;b'", "'a/;b'\n", "a;b");
     }
 
     @Test
@@ -106,6 +109,38 @@ public class FormatTest {
         cell("a\t|  b|\t \tc", "'a\t|  b|\t \tc'\n", "a\t", "  b", "\t \tc");
     }
 
+    @Test
+    public void cells() throws CsvLineException {
+        Cells cells;
+        char[] chars;
+
+        cells = new Cells(format);
+        cells.parse("a;'b|c''d';NULL;EMPTY;/;x");
+        assertEquals(5, cells.size());
+        assertEquals("a", cells.getOne(0));
+        assertEquals(2, cells.values(1));
+        assertEquals("b", cells.get(1, 0));
+        assertEquals("c'd", cells.get(1, 1));
+        assertTrue(cells.isNull(2));
+        assertEquals(0, cells.values(2));
+        assertFalse(cells.isNull(3));
+        assertEquals(0, cells.values(3));
+        assertEquals(";x", cells.getOne(4));
+        assertEquals("<;x", cells.append(4, 0, new StringBuilder("<")).toString());
+        assertEquals(format.write(format.read("a;'b|c''d';NULL;EMPTY;/;x")), format.write(cells.toLine()));
+
+        chars = "--1;2--".toCharArray();
+        cells.parse(chars, 2, 5);
+        assertEquals(2, cells.size());
+        assertEquals("1", cells.getOne(0));
+        assertEquals("2", cells.getOne(1));
+    }
+
+    @Test(expected=ViewException.class)
+    public void cellsGetOneEmpty() throws CsvLineException {
+        new Cells(format).parse("EMPTY").getOne(0);
+    }
+
     // test lines where each cell has exacly one value
     private void values(String line, String lineExpected, String ... cellsExpected) throws CsvLineException {
         Line parsed;
@@ -22,12 +22,16 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class CopyDiffTest {
 	private final World world;
@@ -64,6 +68,185 @@ public class CopyDiffTest {
         assertEquals("rw-r-xr-x", destdir.join("file").getPermissions());
     }
     
+    @Test
+    public void parallel() throws Exception {
+        Node src;
+        Node sequential;
+        Node dest;
+        ExecutorService executor;
+        List<Node> expected;
+        List<Node> actual;
+
+        variables.put("home", "mhm");
+        src = copy.getSourceDir();
+        for (int i = 0; i < 20; i++) {
+            src.join("dir" + (i % 3), "file" + i).getParent().mkdirsOpt();
+            src.join("dir" + (i % 3), "file" + i).writeString("home: ${home} " + i);
+        }
+        sequential = world.getTemp().createTempDirectory();
+        dest = world.getTemp().createTempDirectory();
+        expected = copy.directory(sequential);
+        executor = Executors.newFixedThreadPool(4);
+        try {
+            actual = copy.parallel(executor).directory(dest);
+        } finally {
+            copy.parallel(null);
+            executor.shutdown();
+        }
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getRelative(sequential), actual.get(i).getRelative(dest));
+        }
+        assertEquals("home: mhm 7", dest.join("dir1/file7").readString());
+        assertEquals("", sequential.diffDirectory(dest, false));
+    }
+
+    @Test
+    public void parallelFailures() throws Exception {
+        Node dest;
+        ExecutorService executor;
+
+        copy.getSourceDir().join("a").writeString("a");
+        copy.getSourceDir().join("b").writeString("b");
+        copy.getSourceDir().join("c").writeString("c");
+        dest = world.getTemp().createTempDirectory();
+        dest.join("a").mkdir();
+        dest.join("b").mkdir();
+        executor = Executors.newFixedThreadPool(2);
+        try {
+            copy.parallel(executor).directory(dest);
+            fail();
+        } catch (CopyException e) {
+            assertEquals(1, e.getSuppressed().length);
+        } finally {
+            copy.parallel(null);
+            executor.shutdown();
+        }
+        assertEquals("c", dest.join("c").readString());
+    }
+
+    @Test
+    public void incremental() throws Exception {
+        Node src;
+        Node dest;
+        Copy plain;
+
+        src = world.getTemp().createTempDirectory();
+        dest = world.getTemp().createTempDirectory();
+        src.join("a").writeString("a");
+        src.join("dir").mkdir();
+        src.join("dir/b").writeString("b");
+        plain = new Copy(src).incremental(true);
+        assertEquals(3, plain.directory(dest).size());
+        assertEquals(2, plain.getCopied());
+        assertEquals(0, plain.getSkipped());
+        assertEquals(3, plain.directory(dest).size());
+        assertEquals(0, plain.getCopied());
+        assertEquals(2, plain.getSkipped());
+        src.join("a").writeString("modified");
+        plain.directory(dest);
+        assertEquals(1, plain.getCopied());
+        assertEquals(1, plain.getSkipped());
+        assertEquals("modified", dest.join("a").readString());
+    }
+
+    @Test
+    public void undefinedVariableLeavesNoDest() throws Exception {
+        Node dest;
+
+        copy.getSourceDir().join("file").writeString("ok ${undefined} more");
+        dest = world.getTemp().createTempDirectory();
+        try {
+            copy.directory(dest);
+            fail();
+        } catch (CopyException e) {
+            // ok
+        }
+        assertEquals(0, dest.list().size());
+        dest.join("file").writeString("previous");
+        try {
+            copy.directory(dest);
+            fail();
+        } catch (CopyException e) {
+            // ok
+        }
+        assertEquals(Arrays.asList(dest.join("file")), dest.list());
+        assertEquals("previous", dest.join("file").readString());
+    }
+
+    @Test
+    public void incrementalOlderSource() throws Exception {
+        Node src;
+        Node dest;
+        Copy plain;
+
+        src = world.getTemp().createTempDirectory();
+        dest = world.getTemp().createTempDirectory();
+        src.join("a").writeString("abc");
+        plain = new Copy(src).incremental(true);
+        plain.directory(dest);
+        assertEquals(src.join("a").getLastModified() / 1000, dest.join("a").getLastModified() / 1000);
+        // e.g. restored from a backup
+        src.join("a").writeString("xyz");
+        src.join("a").setLastModified(src.join("a").getLastModified() - 3600 * 1000);
+        plain.directory(dest);
+        assertEquals(1, plain.getCopied());
+        assertEquals("xyz", dest.join("a").readString());
+        plain.directory(dest);
+        assertEquals(0, plain.getCopied());
+        assertEquals(1, plain.getSkipped());
+    }
+
+    @Test
+    public void incrementalSubstitutedLeavesNoTemp() throws Exception {
+        Node dest;
+
+        variables.put("home", "mhm");
+        copy.getSourceDir().join("file").writeString("home: ${home}");
+        dest = world.getTemp().createTempDirectory();
+        copy.incremental(true);
+        try {
+            copy.directory(dest);
+            copy.directory(dest);
+            assertEquals(1, copy.getSkipped());
+        } finally {
+            copy.incremental(false);
+        }
+        assertEquals(Arrays.asList(dest.join("file")), dest.list());
+        assertEquals("home: mhm", dest.join("file").readString());
+    }
+
+    @Test
+    public void incrementalManifest() throws Exception {
+        Node dest;
+        Node manifest;
+
+        variables.put("home", "mhm");
+        copy.getSourceDir().join("file").writeString("home: ${home}");
+        dest = world.getTemp().createTempDirectory();
+        manifest = world.getTemp().createTempFile();
+        manifest.deleteFile();
+        copy.incremental(true).manifest(manifest);
+        try {
+            copy.directory(dest);
+            assertEquals(1, copy.getCopied());
+            assertTrue(manifest.readString().endsWith(" file" + OS.CURRENT.lineSeparator.getSeparator()));
+            copy.directory(dest);
+            assertEquals(0, copy.getCopied());
+            assertEquals(1, copy.getSkipped());
+            variables.put("home", "changed");
+            copy.directory(dest);
+            assertEquals(1, copy.getCopied());
+            assertEquals("home: changed", dest.join("file").readString());
+            dest.join("file").writeString("modified by somebody else");
+            copy.directory(dest);
+            assertEquals(1, copy.getCopied());
+            assertEquals("home: changed", dest.join("file").readString());
+        } finally {
+            copy.incremental(false).manifest(null);
+        }
+    }
+
 	@Test
 	public void diff() throws Exception {
 		Node left;
@@ -77,6 +260,41 @@ public class CopyDiffTest {
 		assertEquals(l("A right"), new Diff(true).directory(left, right, "right"));
 	}
 
+    @Test
+    public void diffParallel() throws Exception {
+        Node left;
+        Node right;
+        Filter filter;
+        ExecutorService executor;
+        String expected;
+        List<String> paths;
+
+        left = world.getTemp().createTempDirectory();
+        right = world.getTemp().createTempDirectory();
+        for (int i = 0; i < 30; i++) {
+            right.join("dir" + (i % 3), "file" + i).getParent().mkdirsOpt();
+            right.join("dir" + (i % 3), "file" + i).writeString("a\n" + (i % 5 == 0 ? "changed" : i) + "\n");
+            if (i % 4 != 0) {
+                left.join("dir" + (i % 3), "file" + i).getParent().mkdirsOpt();
+                left.join("dir" + (i % 3), "file" + i).writeString("a\n" + i + "\n");
+            }
+        }
+        right.join("dir1/added").writeString("new");
+        filter = world.filter().includeAll();
+        for (boolean brief : new boolean[] { true, false }) {
+            expected = new Diff(brief).directory(left, right, filter);
+            executor = Executors.newFixedThreadPool(4);
+            try {
+                assertEquals(expected, new Diff(brief).parallel(executor).directory(left, right, filter));
+            } finally {
+                executor.shutdown();
+            }
+        }
+        paths = new ArrayList<>(Arrays.asList("dir1/added"));
+        new Diff(true).paths(right, world.filter().include("dir1", "dir1/added"), paths);
+        assertEquals(Arrays.asList("dir1/added", "dir1"), paths);
+    }
+
 	@Test
     public void template() throws Exception {
         Node destdir;
@@ -21,8 +21,11 @@ import org.junit.Test;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 public class LineReaderTest {
     private final World world = new World();
@@ -82,6 +85,55 @@ public class LineReaderTest {
                 5, "a\n", "b\r", "c\r\n", "d\n\r", "e");
     }
 
+    @Test
+    public void crlf() {
+        check("a\r\nb\nc\r\r\n\r\n", new LineFormat(LineFormat.CRLF_SEPARATOR), 3, "a", "b\nc\r", "");
+    }
+
+    @Test
+    public void regexSeparator() {
+        check("a;b;;c,d;", new LineFormat(Pattern.compile(";+|,")), 4, "a", "b", "c", "d");
+    }
+
+    /** scanning separators must give the same result as matching their patterns */
+    @Test
+    public void sameAsRegex() {
+        Random random;
+        StringBuilder builder;
+        String str;
+        List<String> expected;
+
+        random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            builder = new StringBuilder();
+            for (int j = random.nextInt(40); j > 0; j--) {
+                builder.append("ab \r\n".charAt(random.nextInt(5)));
+            }
+            str = builder.toString();
+            for (LineFormat.Trim trim : LineFormat.Trim.values()) {
+                for (Pattern separator : new Pattern[] { LineFormat.GENERIC_SEPARATOR, LineFormat.LF_SEPARATOR, LineFormat.CRLF_SEPARATOR }) {
+                    expected = collect(str, new LineFormat(Pattern.compile("(?:" + separator.pattern() + ")"), trim), 256);
+                    check(str, new LineFormat(separator, trim), expected.size(), expected.toArray(new String[expected.size()]));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void nextSequence() throws IOException {
+        LineReader reader;
+        CharSequence line;
+
+        reader = new LineReader(world.memoryNode("ab\ncd").createReader(), LineFormat.RAW_FORMAT, 1);
+        line = reader.nextSequence();
+        assertEquals("ab\n", line.toString());
+        assertEquals('b', line.charAt(1));
+        assertEquals("b", line.subSequence(1, 2).toString());
+        assertEquals("cd", reader.nextSequence().toString());
+        assertNull(reader.nextSequence());
+        assertEquals(2, reader.getLine());
+    }
+
     //--
     
     private void check(String str, String ... expected) {
@@ -111,6 +163,14 @@ public class LineReaderTest {
         assertEquals(Arrays.asList(expected), result);
         assertEquals(lastLine, reader.getLine());
     }
+
+    private List<String> collect(String str, LineFormat format, int initialSize) {
+        try {
+            return new LineReader(world.memoryNode(str).createReader(), format, initialSize).collect();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
     
     private static String l(String ... lines) {
     	return OS.CURRENT.lines(lines);
@@ -34,6 +34,8 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.attribute.GroupPrincipal;
 import java.nio.file.attribute.UserPrincipal;
 import java.util.ArrayList;
@@ -491,6 +493,49 @@ public abstract class NodeTest<T extends Node> extends NodeReadOnlyTest<T> {
         assertEquals(0, dest.toByteArray().length);
     }
 
+    //-- random access
+
+    @Test
+    public void openChannel() throws IOException {
+        Node file;
+        ByteBuffer buffer;
+
+        file = work.join("foo").writeString("0123456789");
+        try (SeekableByteChannel channel = file.openChannel()) {
+            assertEquals(10, channel.size());
+            channel.position(7);
+            buffer = ByteBuffer.allocate(5);
+            assertEquals(3, channel.read(buffer));
+            assertEquals(-1, channel.read(buffer));
+            assertEquals('7', buffer.get(0));
+            assertEquals('9', buffer.get(2));
+        }
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void openChannelDirectory() throws IOException {
+        work.join("dir").mkdir().openChannel();
+    }
+
+    @Test
+    public void map() throws IOException {
+        Node file;
+        ByteBuffer buffer;
+
+        file = work.join("foo").writeString("0123456789");
+        buffer = file.map(2, 3);
+        assertEquals(3, buffer.remaining());
+        assertEquals('2', buffer.get());
+        assertEquals('3', buffer.get());
+        assertEquals('4', buffer.get());
+        assertEquals(0, file.map(10, 0).remaining());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void mapOutOfRange() throws IOException {
+        work.join("foo").writeString("0123456789").map(5, 6);
+    }
+
     @Test
     public void readerWriter() throws IOException {
         Node file;
@@ -15,18 +15,34 @@
  */
 package net.oneandone.sushi.fs;
 
+import net.oneandone.sushi.fs.file.FileNode;
 import net.oneandone.sushi.fs.memory.MemoryNode;
+import net.oneandone.sushi.xml.TemplatesCache;
+import net.oneandone.sushi.xml.Xml;
 import org.junit.Test;
 
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 public class NodeXmlTest {
     private static final World WORLD = new World();
 
+    private static final String STYLESHEET =
+            "<xsl:stylesheet xmlns:xsl='http://www.w3.org/1999/XSL/Transform' version='1.0'>" +
+            "  <xsl:output method='text'/>" +
+            "  <xsl:template match='/' ><xsl:value-of select='/a'/></xsl:template>" +
+            "</xsl:stylesheet>";
+
     @Test
     public void xslt() throws IOException, TransformerException {
         Transformer t;
@@ -44,4 +60,70 @@ public class NodeXmlTest {
         assertEquals(WORLD.getSettings().lineSeparator.join("<?xml version=\"1.0\" encoding=\"UTF-8\"?><out/>", ""),
                 dest.readString());
     }
+
+    @Test
+    public void templatesCache() throws Exception {
+        TemplatesCache cache;
+        FileNode xsl;
+        Templates first;
+
+        cache = new TemplatesCache(1);
+        xsl = WORLD.getTemp().createTempFile();
+        xsl.writeString(STYLESHEET);
+        first = cache.get(xsl);
+        assertSame(first, cache.get(xsl));
+        assertEquals(1, cache.getCompiled());
+        xsl.setLastModified(xsl.getLastModified() - 10000);
+        assertNotSame(first, cache.get(xsl));
+        assertEquals(2, cache.getCompiled());
+        cache.get(WORLD.getTemp().createTempFile().writeString(STYLESHEET));
+        assertEquals(1, cache.size());
+        cache.get(xsl);
+        assertEquals(4, cache.getCompiled());
+    }
+
+    @Test
+    public void templatesCacheMaxSize() throws Exception {
+        TemplatesCache cache;
+        FileNode xsl;
+
+        assertEquals(3, new Xml(3).getTemplates().getMaxSize());
+        cache = new TemplatesCache(4);
+        for (int i = 0; i < 4; i++) {
+            xsl = WORLD.getTemp().createTempFile();
+            xsl.writeString(STYLESHEET);
+            cache.get(xsl);
+        }
+        assertEquals(4, cache.size());
+        cache.setMaxSize(2);
+        assertEquals(2, cache.size());
+        xsl = WORLD.getTemp().createTempFile();
+        xsl.writeString(STYLESHEET);
+        cache.get(xsl);
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void xsltBatch() throws Exception {
+        Templates templates;
+        Map<Node, Node> jobs;
+        ExecutorService executor;
+        int i;
+
+        templates = WORLD.getTemp().createTempFile().writeString(STYLESHEET).readTemplates();
+        jobs = new LinkedHashMap<>();
+        for (i = 0; i < 20; i++) {
+            jobs.put(WORLD.memoryNode("<a>" + i + "</a>"), WORLD.memoryNode(""));
+        }
+        executor = Executors.newFixedThreadPool(4);
+        try {
+            WORLD.getXml().xslt(templates, jobs, executor);
+        } finally {
+            executor.shutdown();
+        }
+        i = 0;
+        for (Node dest : jobs.values()) {
+            assertEquals(Integer.toString(i++), dest.readString());
+        }
+    }
 }
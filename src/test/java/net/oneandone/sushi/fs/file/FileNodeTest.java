@@ -15,13 +15,17 @@
  */
 package net.oneandone.sushi.fs.file;
 
+import net.oneandone.sushi.fs.Node;
 import net.oneandone.sushi.fs.MoveException;
 import net.oneandone.sushi.fs.NodeTest;
 import net.oneandone.sushi.io.OS;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -168,6 +172,145 @@ public class FileNodeTest extends NodeTest<FileNode> {
 
     //--
 
+    @Test
+    public void copyFileTransfer() throws IOException {
+        FileNode src;
+        FileNode dest;
+        byte[] data;
+
+        data = new byte[100000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        src = work.join("src");
+        src.writeBytes(data);
+        dest = work.join("dest");
+        dest.writeString("longer than nothing");
+        src.copyFile(dest);
+        assertTrue(Arrays.equals(data, dest.readBytes()));
+        src.writeBytes();
+        src.copyFile(dest);
+        assertEquals(0, dest.length());
+    }
+
+    @Test
+    public void writeToFileOutputStream() throws IOException {
+        FileNode src;
+        FileNode dest;
+
+        src = work.join("src");
+        src.writeString("0123456789");
+        dest = work.join("dest");
+        try (FileOutputStream out = new FileOutputStream(dest.toPath().toFile())) {
+            out.write('x');
+            assertEquals(7, src.writeTo(out, 3));
+            assertEquals(0, src.writeTo(out, 20));
+        }
+        assertEquals("x3456789", dest.readString());
+    }
+
+    /** files in /proc report size 0; they must not be copied as empty files */
+    @Test
+    public void copySizeZeroFile() throws IOException {
+        FileNode src;
+        FileNode dest;
+
+        src = WORLD.file("/proc/self/status");
+        if (!src.exists()) {
+            return;
+        }
+        dest = work.join("dest");
+        src.copyFile(dest);
+        assertTrue(dest.length() > 0);
+        try (FileOutputStream out = new FileOutputStream(dest.toPath().toFile())) {
+            assertTrue(src.writeTo(out, 0) > 0);
+        }
+        assertTrue(dest.length() > 0);
+    }
+
+    @Test
+    public void listWithAttributes() throws IOException {
+        FileNode file;
+        List<FileNode> children;
+        FileRoot root;
+
+        work.join("dir").mkdir();
+        file = work.join("file");
+        file.writeString("abc");
+        file.setLastModified(1000000);
+        root = work.getRoot();
+        assertEquals(0, root.getAttributesTimeout());
+        root.setAttributesTimeout(60000);
+        try {
+            children = work.listWithAttributes();
+        } finally {
+            root.setAttributesTimeout(FileRoot.DEFAULT_ATTRIBUTES_TIMEOUT);
+        }
+        assertEquals(2, children.size());
+        for (FileNode child : children) {
+            assertTrue(child.exists());
+            assertFalse(child.isLink());
+            if (child.getName().equals("dir")) {
+                assertTrue(child.isDirectory());
+                assertFalse(child.isFile());
+            } else {
+                assertTrue(child.isFile());
+                assertEquals(3, child.length());
+                assertEquals(1000000, child.getLastModified());
+                child.writeString("abcd");
+                assertEquals(4, child.length());
+                child.deleteFile();
+                assertFalse(child.exists());
+            }
+        }
+    }
+
+    @Test
+    public void findSeesOtherModifications() throws IOException {
+        FileNode file;
+        Node found;
+
+        file = work.join("file");
+        file.writeString("abc");
+        found = work.find("*").get(0);
+        assertEquals(3, found.length());
+        file.writeString("abcdef");
+        assertEquals(6, found.length());
+        file.deleteFile();
+        assertFalse(found.exists());
+    }
+
+    @Test
+    public void listWithAttributesExpires() throws Exception {
+        FileNode file;
+        FileNode listed;
+        FileRoot root;
+        long timeout;
+
+        file = work.join("file");
+        file.writeString("abc");
+        file.setLastModified(1000000);
+        root = work.getRoot();
+        timeout = root.getAttributesTimeout();
+        root.setAttributesTimeout(100);
+        try {
+            listed = work.listWithAttributes().get(0);
+            assertEquals(3, listed.length());
+            // modified through an other node
+            file.writeString("abcdef");
+            file.setLastModified(2000000);
+            Thread.sleep(200);
+            assertEquals(6, listed.length());
+            assertEquals(2000000, listed.getLastModified());
+            root.setAttributesTimeout(0);
+            listed = work.listWithAttributes().get(0);
+            file.deleteFile();
+            assertFalse(listed.exists());
+        } finally {
+            root.setAttributesTimeout(timeout);
+        }
+    }
+
     @Test
     public void temp() throws IOException {
         FileNode tmp;
@@ -22,11 +22,15 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class FilterTest {
@@ -168,6 +172,33 @@ public class FilterTest {
         assertNull(action.getResult());
     }
 
+    @Test
+    public void parallel() throws IOException {
+        ForkJoinPool pool;
+
+        create("a", "b/c", "b/d/e", "b/d/f", "c/a/b/c/d", "x.c", "y/x.c");
+        pool = new ForkJoinPool(4);
+        try {
+            checkParallel(filter().include("**/*"), pool);
+            checkParallel(filter().include("**/*").minDepth(2).maxDepth(3), pool);
+            checkParallel(filter().include("**/*.c").exclude("y/**/*"), pool);
+            checkParallel(filter().include("b/d/*"), pool);
+            checkParallel(filter().include("**/*").predicate(Predicate.DIRECTORY), pool);
+            checkParallel(filter().include("**/nosuchfile"), pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void checkParallel(Filter filter, ForkJoinPool pool) throws IOException {
+        List<Node> sequential;
+        List<Node> parallel;
+
+        sequential = root.find(filter);
+        parallel = root.find(new Filter(filter).parallel(pool));
+        assertEquals(sequential, parallel);
+    }
+
     //-- matches
 
     @Test
@@ -223,6 +254,81 @@ public class FilterTest {
         assertFalse(filter.matches("xy/bc/abc.c"));
     }
 
+    @Test
+    public void matchesWildcards() throws IOException {
+        Filter filter;
+
+        filter = new Filter().include("**/*.java", "**/*.[ch]", "src/**/Foo?.txt", "lib/*").exclude("**/*Test.java", "**/tmp/**/*");
+        assertTrue(filter.matches("A.java"));
+        assertTrue(filter.matches("a/b/A.java"));
+        assertFalse(filter.matches("a/b/ATest.java"));
+        assertFalse(filter.matches("a/tmp/A.java"));
+        assertFalse(filter.matches("a\nb.java"));
+        assertTrue(filter.matches("x/y.h"));
+        assertFalse(filter.matches("x/y.o"));
+        assertTrue(filter.matches("src/a/b/Foo1.txt"));
+        assertFalse(filter.matches("src/a/b/Foo12.txt"));
+        assertTrue(filter.matches("lib/x"));
+        assertFalse(filter.matches("LIB/x"));
+        filter = new Filter().ignoreCase().include("**/*.java");
+        assertTrue(filter.matches("a/B.JAVA"));
+    }
+
+    @Test
+    public void compileMatcher() {
+        Filter filter;
+        PathMatcher matcher;
+        List<String> paths;
+        boolean[] sequential;
+        boolean[] parallel;
+        ForkJoinPool pool;
+
+        filter = new Filter().include("**/*.java", "src/*/x", "a/**/b?").exclude("**/tmp/**/*", "**/*Test.java").maxDepth(4);
+        matcher = filter.compileMatcher();
+        paths = new ArrayList<>();
+        for (String a : new String[] { "src", "a", "tmp", "X.java" }) {
+            for (String b : new String[] { "", "/main", "/x", "/b1", "/tmp/Y.java", "/XTest.java", "/Z.java", "/c/d/e/b2" }) {
+                paths.add(a + b);
+            }
+        }
+        for (String path : paths) {
+            assertEquals(path, filter.matches(path), matcher.matches(path));
+        }
+        assertTrue(matcher.matches("src/main/x"));
+        assertFalse(matcher.matches("a/c/d/e/b2"));
+        for (int i = 0; i < 10000; i++) {
+            paths.add("src/main/java/C" + i + ".java");
+        }
+        sequential = matcher.matches(paths, null);
+        pool = new ForkJoinPool(4);
+        try {
+            parallel = matcher.matches(paths, pool);
+        } finally {
+            pool.shutdown();
+        }
+        assertTrue(Arrays.equals(sequential, parallel));
+        for (int i = 0; i < paths.size(); i++) {
+            assertEquals(filter.matches(paths.get(i)), sequential[i]);
+        }
+    }
+
+    @Test
+    public void automatonStates() {
+        Automaton automaton;
+        Automaton.State state;
+
+        automaton = new Filter().include("**/*.java").exclude("**/tmp/**/*").automaton();
+        state = automaton.start;
+        for (int i = 0; i < 100; i++) {
+            state = state.step("dir" + i).next;
+        }
+        assertSame(automaton.start, state);
+        assertTrue(state.step("A.java").select);
+        assertSame(state, state.step("A.java").next);
+        assertNull(state.step("tmp").next);
+        assertEquals(1, automaton.size());
+    }
+
     //--
 
     private Filter filter() {
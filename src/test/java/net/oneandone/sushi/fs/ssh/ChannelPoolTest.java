@@ -0,0 +1,200 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.sushi.fs.ssh;
+
+import com.jcraft.jsch.JSchException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ChannelPoolTest {
+    @Test
+    public void reuse() throws JSchException {
+        Pool pool;
+        Channel a;
+        Channel b;
+
+        pool = new Pool(4, 0);
+        a = pool.allocate();
+        b = pool.allocate();
+        assertNotSame(a, b);
+        assertEquals(2, pool.getAllocated());
+        pool.free(a);
+        pool.free(b);
+        assertEquals(0, pool.getAllocated());
+        assertEquals(2, pool.getIdle());
+        assertSame(b, pool.allocate());
+        assertSame(a, pool.allocate());
+        assertEquals(2, pool.getOpened());
+    }
+
+    @Test
+    public void unhealthyNotReused() throws JSchException {
+        Pool pool;
+        Channel a;
+
+        pool = new Pool(4, 0);
+        a = pool.allocate();
+        pool.free(a);
+        a.connected = false;
+        assertNotSame(a, pool.allocate());
+        assertEquals(0, pool.getIdle());
+    }
+
+    @Test
+    public void maxIdle() throws JSchException {
+        Pool pool;
+        Channel a;
+        Channel b;
+
+        pool = new Pool(4, 0);
+        pool.setMaxIdle(1);
+        a = pool.allocate();
+        b = pool.allocate();
+        pool.free(a);
+        pool.free(b);
+        assertEquals(1, pool.getIdle());
+        assertFalse(a.connected);
+        assertTrue(b.connected);
+    }
+
+    @Test
+    public void idleTimeout() throws JSchException {
+        Pool pool;
+        Channel a;
+        Channel b;
+
+        pool = new Pool(4, 0);
+        pool.setIdleTimeout(0);
+        a = pool.allocate();
+        pool.free(a);
+        assertEquals(0, pool.getIdle());
+        assertFalse(a.connected);
+        pool.setMinIdle(1);
+        b = pool.allocate();
+        pool.free(b);
+        assertEquals(1, pool.getIdle());
+        assertTrue(b.connected);
+    }
+
+    @Test
+    public void maxTotal() throws JSchException {
+        Pool pool;
+        Channel a;
+
+        pool = new Pool(1, 0);
+        a = pool.allocate();
+        try {
+            pool.allocate();
+            fail();
+        } catch (JSchException e) {
+            // ok
+        }
+        assertEquals(1, pool.getAllocated());
+        pool.free(a);
+        assertSame(a, pool.allocate());
+    }
+
+    @Test
+    public void unlimited() throws JSchException {
+        Pool pool;
+
+        pool = new Pool(0, 0);
+        for (int i = 0; i < 20; i++) {
+            pool.allocate();
+        }
+        assertEquals(20, pool.getAllocated());
+        assertEquals(20, pool.getOpened());
+    }
+
+    @Test
+    public void maxTotalWaits() throws Exception {
+        final Pool pool;
+        final Channel a;
+        Thread thread;
+
+        pool = new Pool(1, 10000);
+        a = pool.allocate();
+        thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    // fall through
+                }
+                pool.free(a);
+            }
+        };
+        thread.start();
+        assertSame(a, pool.allocate());
+        thread.join();
+        assertEquals(1, pool.getOpened());
+    }
+
+    @Test
+    public void failedOpenReleasesSlot() throws JSchException {
+        Pool pool;
+
+        pool = new Pool(1, 0);
+        pool.fail = true;
+        try {
+            pool.allocate();
+            fail();
+        } catch (JSchException e) {
+            assertEquals("open failed", e.getMessage());
+        }
+        assertEquals(0, pool.getAllocated());
+        pool.fail = false;
+        pool.allocate();
+        assertEquals(1, pool.getAllocated());
+    }
+
+    private static class Channel {
+        public volatile boolean connected = true;
+    }
+
+    private static class Pool extends ChannelPool<Channel> {
+        public volatile boolean fail = false;
+
+        public Pool(int maxTotal, long maxWait) {
+            super(maxTotal, maxWait, 0, 8, 60000);
+        }
+
+        @Override
+        protected Channel open() throws JSchException {
+            if (fail) {
+                throw new JSchException("open failed");
+            }
+            return new Channel();
+        }
+
+        @Override
+        protected boolean isHealthy(Channel channel) {
+            return channel.connected;
+        }
+
+        @Override
+        protected void disconnect(Channel channel) {
+            channel.connected = false;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.sushi.fs.webdav;
+
+import net.oneandone.sushi.xml.Xml;
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class MultiStatusReaderTest {
+    private static final String BODY =
+            "<?xml version='1.0' encoding='utf-8'?>\n"
+            + "<D:multistatus xmlns:D='DAV:'>\n"
+            + "  <D:response>\n"
+            + "    <D:href>/dir/</D:href>\n"
+            + "    <D:propstat>\n"
+            + "      <D:prop><D:resourcetype><D:collection/></D:resourcetype></D:prop>\n"
+            + "      <D:status>HTTP/1.1 200 OK</D:status>\n"
+            + "    </D:propstat>\n"
+            + "  </D:response>\n"
+            + "  <!-- comment -->\n"
+            + "  <D:response>\n"
+            + "    <D:href>/dir/file</D:href>\n"
+            + "    <D:propstat>\n"
+            + "      <D:prop><D:getcontentlength>42</D:getcontentlength><D:resourcetype/></D:prop>\n"
+            + "      <D:status>HTTP/1.1 200 OK</D:status>\n"
+            + "    </D:propstat>\n"
+            + "    <D:propstat>\n"
+            + "      <D:prop><D:getlastmodified/></D:prop>\n"
+            + "      <D:status>HTTP/1.1 404 Not Found</D:status>\n"
+            + "    </D:propstat>\n"
+            + "  </D:response>\n"
+            + "</D:multistatus>\n";
+
+    @Test
+    public void incremental() throws IOException {
+        List<MultiStatus> lst;
+
+        try (MultiStatusReader reader = reader(BODY)) {
+            lst = reader.next();
+            assertEquals(1, lst.size());
+            assertEquals("/dir/", lst.get(0).href);
+            assertEquals(200, lst.get(0).status);
+            assertEquals(Name.RESOURCETYPE, lst.get(0).property.getName());
+            assertEquals("collection", ((Element) lst.get(0).property.getValue()).getLocalName());
+            lst = reader.next();
+            assertEquals(3, lst.size());
+            assertEquals("/dir/file", lst.get(0).href);
+            assertEquals(Name.GETCONTENTLENGTH, lst.get(0).property.getName());
+            assertEquals("42", lst.get(0).property.getValue());
+            assertEquals(Name.RESOURCETYPE, lst.get(1).property.getName());
+            assertNull(lst.get(1).property.getValue());
+            assertEquals(404, lst.get(2).status);
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void readAll() throws IOException {
+        try (MultiStatusReader reader = reader(BODY)) {
+            assertEquals(4, reader.readAll().size());
+        }
+    }
+
+    @Test
+    public void empty() throws IOException {
+        try (MultiStatusReader reader = reader("<multistatus xmlns='DAV:'/>")) {
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void wrongRoot() {
+        try {
+            reader("<D:foo xmlns:D='DAV:'/>");
+            fail();
+        } catch (IOException e) {
+            // ok
+        }
+    }
+
+    private static MultiStatusReader reader(String str) throws IOException {
+        return new MultiStatusReader(new Xml(), new ByteArrayInputStream(str.getBytes("UTF-8")));
+    }
+}
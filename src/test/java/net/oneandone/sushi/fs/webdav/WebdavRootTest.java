@@ -0,0 +1,183 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.sushi.fs.webdav;
+
+import net.oneandone.sushi.fs.World;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/** Connection pool tests against a server socket that accepts connections but never answers */
+public class WebdavRootTest {
+    private ServerSocket server;
+    private List<Socket> accepted;
+    private WebdavRoot root;
+
+    @Before
+    public void before() throws IOException {
+        World world;
+
+        server = new ServerSocket(0);
+        accepted = new CopyOnWriteArrayList<>();
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        accepted.add(server.accept());
+                    }
+                } catch (IOException e) {
+                    // closed
+                }
+            }
+        }.start();
+        world = new World();
+        root = new WebdavRoot(world.getFilesystem("http", WebdavFilesystem.class), "http", "localhost", server.getLocalPort());
+    }
+
+    @After
+    public void after() throws IOException {
+        root.closeIdle();
+        server.close();
+        for (Socket socket : accepted) {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void reuse() throws IOException {
+        WebdavConnection a;
+        WebdavConnection b;
+
+        a = root.allocate();
+        b = root.allocate();
+        assertNotSame(a, b);
+        assertEquals(2, root.getAllocated());
+        root.free(ok(), a);
+        root.free(ok(), b);
+        assertEquals(0, root.getAllocated());
+        assertEquals(2, root.getIdle());
+        assertSame(b, root.allocate());
+        assertEquals(1, root.getIdle());
+        assertEquals(2, root.getOpened());
+        assertEquals(1, root.getReused());
+    }
+
+    @Test
+    public void freeWithoutResponseCloses() throws IOException {
+        WebdavConnection a;
+
+        a = root.allocate();
+        root.free(null, a);
+        assertFalse(a.isOpen());
+        assertEquals(0, root.getIdle());
+    }
+
+    @Test
+    public void maxIdle() throws IOException {
+        WebdavConnection a;
+        WebdavConnection b;
+
+        root.setMaxIdle(1);
+        a = root.allocate();
+        b = root.allocate();
+        root.free(ok(), a);
+        root.free(ok(), b);
+        assertEquals(1, root.getIdle());
+        assertTrue(a.isOpen());
+        assertFalse(b.isOpen());
+    }
+
+    @Test
+    public void idleTimeout() throws IOException {
+        WebdavConnection a;
+
+        root.setIdleTimeout(0);
+        a = root.allocate();
+        root.free(ok(), a);
+        assertEquals(0, root.getIdle());
+        assertFalse(a.isOpen());
+    }
+
+    @Test
+    public void stale() throws Exception {
+        WebdavConnection a;
+
+        a = root.allocate();
+        root.free(ok(), a);
+        waitForAccepted(1);
+        accepted.get(0).close();
+        Thread.sleep(50);
+        assertTrue(a.isStale());
+        assertNotSame(a, root.allocate());
+        assertEquals(2, root.getOpened());
+        assertEquals(0, root.getReused());
+    }
+
+    @Test
+    public void maxTotal() throws Exception {
+        final WebdavConnection a;
+        final CountDownLatch done;
+
+        root.setMaxTotal(1);
+        a = root.allocate();
+        done = new CountDownLatch(1);
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    root.free(ok(), root.allocate());
+                    done.countDown();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }.start();
+        assertFalse(done.await(100, TimeUnit.MILLISECONDS));
+        root.free(ok(), a);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(0, root.getAllocated());
+        assertEquals(1, root.getOpened());
+    }
+
+    private void waitForAccepted(int count) throws InterruptedException {
+        for (int i = 0; i < 100 && accepted.size() < count; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, accepted.size());
+    }
+
+    private static HttpResponse ok() {
+        return new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+    }
+}
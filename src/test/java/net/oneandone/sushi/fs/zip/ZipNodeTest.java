@@ -27,10 +27,13 @@ import java.io.IOException;
 import java.net.URI;
 import java.util.Arrays;
 import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /** Accesses external hosts and might need proxy configuration =&gt; Full test */
@@ -102,6 +105,70 @@ public class ZipNodeTest {
         assertEquals(323, count);
     }
 
+    @Test
+    public void implicitDirectories() throws Exception {
+        FileNode file;
+        ZipNode root;
+        ZipNode dir;
+
+        file = world.getTemp().createTempFile();
+        try (ZipOutputStream out = new ZipOutputStream(file.createOutputStream())) {
+            out.putNextEntry(new ZipEntry("a/b/c.txt"));
+            out.write(new byte[] { 1, 2, 3 });
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("a/d.txt"));
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("e/"));
+            out.closeEntry();
+        }
+        root = file.openZip();
+        assertEquals(Arrays.asList(root.join("a"), root.join("e")), root.list());
+        dir = root.join("a");
+        assertTrue(dir.exists());
+        assertTrue(dir.isDirectory());
+        assertFalse(dir.isFile());
+        assertEquals(Arrays.asList(root.join("a/b"), root.join("a/d.txt")), dir.list());
+        assertTrue(root.join("a/b").isDirectory());
+        assertTrue(root.join("a/d.txt").isFile());
+        assertEquals(0, root.join("a/d.txt").length());
+        assertEquals(3, root.join("a/b/c.txt").length());
+        assertNull(root.join("a/b/c.txt").list());
+        assertTrue(root.join("e").isDirectory());
+        assertFalse(root.join("e").isFile());
+        assertEquals(0, root.join("e").list().size());
+        assertFalse(root.join("a/b/c").exists());
+        assertEquals(2, root.find("**/*.txt").size());
+    }
+
+    @Test
+    public void fileAndDirectoryAndAbsoluteEntries() throws Exception {
+        FileNode file;
+        ZipNode root;
+
+        file = world.getTemp().createTempFile();
+        try (ZipOutputStream out = new ZipOutputStream(file.createOutputStream())) {
+            out.putNextEntry(new ZipEntry("a"));
+            out.write(new byte[] { 1 });
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("a/b.txt"));
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("/c/d.txt"));
+            out.write(new byte[] { 1, 2 });
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("/"));
+            out.closeEntry();
+        }
+        root = file.openZip();
+        assertEquals(Arrays.asList(root.join("a"), root.join("c")), root.list());
+        assertTrue(root.join("a").isFile());
+        assertFalse(root.join("a").isDirectory());
+        assertTrue(root.join("a/b.txt").isFile());
+        assertTrue(root.join("c").isDirectory());
+        assertEquals(Arrays.asList(root.join("c/d.txt")), root.join("c").list());
+        assertEquals(2, root.join("c/d.txt").length());
+        assertEquals(2, root.join("c/d.txt").readBytes().length);
+    }
+
     @Test
     public void getUriWithSpecialChars() throws Exception {
         ZipNode zip;
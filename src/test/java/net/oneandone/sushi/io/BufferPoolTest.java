@@ -0,0 +1,93 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.sushi.io;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class BufferPoolTest {
+    @Test
+    public void reuse() {
+        BufferPool pool;
+        Buffer first;
+        Buffer second;
+
+        pool = new BufferPool(10, 1);
+        first = pool.allocate();
+        second = pool.allocate();
+        assertNotSame(first, second);
+        assertEquals(10, first.size());
+        pool.free(first);
+        pool.free(second);
+        assertEquals(1, pool.getIdle());
+        assertSame(first, pool.allocate());
+        assertEquals(0, pool.getIdle());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void foreign() {
+        new BufferPool(10).free(new Buffer(11));
+    }
+
+    @Test
+    public void concurrentCopy() throws Exception {
+        final BufferPool pool;
+        ExecutorService executor;
+        List<Future<byte[]>> results;
+        final byte[] data;
+
+        pool = new BufferPool(7);
+        data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        executor = Executors.newFixedThreadPool(8);
+        try {
+            results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                results.add(executor.submit(new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws IOException {
+                        ByteArrayOutputStream dest;
+
+                        dest = new ByteArrayOutputStream();
+                        pool.copy(new ByteArrayInputStream(data), dest);
+                        return dest.toByteArray();
+                    }
+                }));
+            }
+            for (Future<byte[]> result : results) {
+                assertArrayEquals(data, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
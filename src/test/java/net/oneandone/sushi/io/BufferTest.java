@@ -21,11 +21,15 @@ import org.junit.Test;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class BufferTest {
@@ -61,6 +65,53 @@ public class BufferTest {
         copy(bytes(0), bytes(0, 1, 2, 3, 4), 1);
     }
 
+    @Test
+    public void copyFileStreams() throws IOException {
+        File src;
+        File dest;
+        byte[] data;
+
+        src = File.createTempFile("buffer", ".src");
+        dest = File.createTempFile("buffer", ".dest");
+        try {
+            data = bytes(1, 2, 3, 4, 5);
+            try (FileOutputStream out = new FileOutputStream(src)) {
+                out.write(data);
+            }
+            try (FileInputStream in = new FileInputStream(src); FileOutputStream out = new FileOutputStream(dest)) {
+                assertEquals(1, in.read());
+                assertEquals(3, new Buffer().copy(in, out, 3));
+                assertEquals(5, in.read());
+            }
+            assertEquals(3, dest.length());
+        } finally {
+            src.delete();
+            dest.delete();
+        }
+    }
+
+    /** pipes, devices and files in /proc report size 0 */
+    @Test
+    public void copySizeZeroChannel() throws IOException {
+        File src;
+        File dest;
+
+        src = new File("/proc/self/status");
+        if (!src.exists()) {
+            return;
+        }
+        dest = File.createTempFile("buffer", ".dest");
+        try {
+            try (FileInputStream in = new FileInputStream(src); FileOutputStream out = new FileOutputStream(dest)) {
+                assertEquals(0, in.getChannel().size());
+                assertTrue(new Buffer().copy(in, out) > 0);
+            }
+            assertTrue(dest.length() > 0);
+        } finally {
+            dest.delete();
+        }
+    }
+
     private byte[] bytes(int ... data) {
         byte[] result;
 
@@ -102,6 +102,19 @@ public class DiffTest {
         assertEquals(" 1\n 2\n 3\n-before\n+after\n X\n Y\n-in\n 4\n 5\n 6\n 7\n", Diff.diff("1\n2\n3\nbefore\nX\nY\nin\n4\n5\n6\n7\n", "1\n2\n3\nafter\nX\nY\n4\n5\n6\n7\n", false, 4));
     }
 
+    @Test
+    public void patience() {
+        String left;
+        String right;
+
+        left = "a\n{\nx\n}\nb\n{\ny\n}\n";
+        right = "b\n{\ny\n}\n";
+        assertEquals("-a\n-{\n-x\n-}\n", Diff.diff(Separator.RAW_LINE.split(left), Separator.RAW_LINE.split(right),
+                false, 0, false, Diff.Algorithm.PATIENCE));
+        assertEquals(Diff.diff(left, right), Diff.diff(Separator.RAW_LINE.split(left), Separator.RAW_LINE.split(right),
+                false, 0, false, Diff.Algorithm.PATIENCE));
+    }
+
     @Test
     public void files() throws IOException {
         World world;
@@ -0,0 +1,89 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.sushi.util;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class FuturesTest {
+    @Test
+    public void order() throws Exception {
+        ExecutorService executor;
+        List<Callable<Integer>> tasks;
+
+        executor = Executors.newFixedThreadPool(4);
+        try {
+            tasks = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                tasks.add(task(i, null));
+            }
+            assertEquals(20, Futures.getAll(Futures.submitAll(executor, tasks), IOException.class).size());
+            assertEquals(Integer.valueOf(7), Futures.getAll(Futures.submitAll(executor, tasks), IOException.class).get(7));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void failures() throws Exception {
+        ExecutorService executor;
+        List<Callable<Integer>> tasks;
+
+        executor = Executors.newFixedThreadPool(4);
+        try {
+            tasks = Arrays.asList(task(0, null), task(1, new IOException("a")), task(2, null), task(3, new IOException("b")));
+            try {
+                Futures.getAll(Futures.submitAll(executor, tasks), IOException.class);
+                fail();
+            } catch (IOException e) {
+                assertEquals("a", e.getMessage());
+                assertEquals(1, e.getSuppressed().length);
+                assertEquals("b", e.getSuppressed()[0].getMessage());
+            }
+            tasks = Arrays.asList(task(0, null), task(1, new IllegalArgumentException("c")));
+            try {
+                Futures.getAll(Futures.submitAll(executor, tasks), IOException.class);
+                fail();
+            } catch (IllegalArgumentException e) {
+                assertEquals("c", e.getMessage());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static Callable<Integer> task(final int result, final Exception failure) {
+        return new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                if (failure != null) {
+                    throw failure;
+                }
+                return result;
+            }
+        };
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.sushi.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MyersTest {
+    @Test
+    public void simple() {
+        assertArrayEquals(new int[] {}, Myers.matches(new int[] {}, new int[] { 1 }));
+        assertArrayEquals(new int[] { -1 }, Myers.matches(new int[] { 1 }, new int[] {}));
+        assertArrayEquals(new int[] { 0, 2 }, Myers.matches(new int[] { 1, 3 }, new int[] { 1, 2, 3 }));
+        assertArrayEquals(new int[] { 0, -1, 1 }, Myers.matches(new int[] { 1, 2, 3 }, new int[] { 1, 3 }));
+    }
+
+    @Test
+    public void random() {
+        Random random;
+        int[] left;
+        int[] right;
+
+        random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            left = random(random, random.nextInt(30), 1 + random.nextInt(5));
+            right = random(random, random.nextInt(30), 1 + random.nextInt(5));
+            assertEquals(Lcs.compute(list(left), list(right)).size(), check(left, right, Myers.matches(left, right)));
+            check(left, right, Myers.patience(left, right));
+        }
+    }
+
+    @Test
+    public void large() {
+        Random random;
+        int[] left;
+        int[] right;
+        int common;
+
+        random = new Random(1);
+        left = random(random, 20000, 1000);
+        right = left.clone();
+        for (int i = 0; i < 200; i++) {
+            right[random.nextInt(right.length)] = random.nextInt(1000);
+        }
+        common = check(left, right, Myers.matches(left, right));
+        assertTrue(common >= left.length - 200);
+        check(left, right, Myers.patience(left, right));
+    }
+
+    /** @return number of matched elements */
+    private static int check(int[] left, int[] right, int[] matches) {
+        int previous;
+        int count;
+
+        assertEquals(left.length, matches.length);
+        previous = -1;
+        count = 0;
+        for (int i = 0; i < matches.length; i++) {
+            if (matches[i] != -1) {
+                assertTrue(Arrays.toString(matches), matches[i] > previous);
+                assertEquals(left[i], right[matches[i]]);
+                previous = matches[i];
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int[] random(Random random, int length, int range) {
+        int[] result;
+
+        result = new int[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = random.nextInt(range);
+        }
+        return result;
+    }
+
+    private static List<Integer> list(int[] array) {
+        List<Integer> result;
+
+        result = new ArrayList<>(array.length);
+        for (int i : array) {
+            result.add(i);
+        }
+        return result;
+    }
+}
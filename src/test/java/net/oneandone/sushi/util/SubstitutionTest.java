@@ -17,8 +17,12 @@ package net.oneandone.sushi.util;
 
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
@@ -86,4 +90,79 @@ public class SubstitutionTest {
             // ok
         }
 	}
+
+    @Test
+    public void streaming() throws Exception {
+        Substitution ant;
+
+        ant = Substitution.ant();
+        assertEquals("", stream(ant, ""));
+        assertEquals(" one xyz", stream(ant, " ${1} xyz"));
+        assertEquals("onetwo", stream(ant, "${1}${2}"));
+        assertEquals("${${", stream(ant, "\\${\\${"));
+        assertEquals("$", stream(ant, "$"));
+        assertEquals("\\$", stream(ant, "\\$"));
+        assertEquals("a{b}", stream(ant, "a{b}"));
+        try {
+            stream(ant, "${3}");
+            fail();
+        } catch (SubstitutionException e) {
+            assertEquals("undefined variable: 3", e.getMessage());
+        }
+        try {
+            stream(ant, "${1");
+            fail();
+        } catch (SubstitutionException e) {
+            assertEquals("missing end marker", e.getMessage());
+        }
+        try {
+            stream(ant, "${averylongvariablename} and more");
+            fail();
+        } catch (SubstitutionException e) {
+            assertEquals("undefined variable: a...", e.getMessage());
+        }
+        try {
+            stream(ant, "${averylongvariablename");
+            fail();
+        } catch (SubstitutionException e) {
+            assertEquals("missing end marker", e.getMessage());
+        }
+    }
+
+    @Test
+    public void streamingMatchesApply() throws Exception {
+        Random random;
+        char[] alphabet;
+        StringBuilder builder;
+
+        random = new Random(42);
+        alphabet = new char[] { '$', '{', '}', '\\', '_', '1', '2', 'x' };
+        for (Substitution substitution : new Substitution[] { Substitution.ant(), Substitution.path(), new Substitution("${{", "}}", '\\') }) {
+            for (int i = 0; i < 20000; i++) {
+                builder = new StringBuilder();
+                for (int j = random.nextInt(16); j > 0; j--) {
+                    builder.append(alphabet[random.nextInt(alphabet.length)]);
+                }
+                assertEquals(builder.toString(), result(substitution, true, builder.toString()), result(substitution, false, builder.toString()));
+            }
+        }
+    }
+
+    private String result(Substitution substitution, boolean stream, String str) {
+        try {
+            return stream ? stream(substitution, str) : substitution.apply(str, props);
+        } catch (SubstitutionException e) {
+            return "error";
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String stream(Substitution substitution, String str) throws IOException, SubstitutionException {
+        StringWriter dest;
+
+        dest = new StringWriter();
+        substitution.apply(new StringReader(str), dest, props);
+        return dest.toString();
+    }
 }
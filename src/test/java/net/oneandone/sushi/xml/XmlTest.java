@@ -0,0 +1,86 @@
+/**
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.sushi.xml;
+
+import net.oneandone.sushi.fs.Node;
+import net.oneandone.sushi.fs.World;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class XmlTest {
+    @Test
+    public void perThread() throws Exception {
+        final Xml xml;
+        final Builder[] other;
+        Thread thread;
+
+        xml = new Xml();
+        assertSame(xml.getBuilder(), xml.getBuilder());
+        assertSame(xml.getSelector(), xml.getSelector());
+        assertSame(xml.getSerializer(), xml.getSerializer());
+        other = new Builder[1];
+        thread = new Thread() {
+            @Override
+            public void run() {
+                other[0] = xml.getBuilder();
+            }
+        };
+        thread.start();
+        thread.join();
+        assertNotSame(xml.getBuilder(), other[0]);
+    }
+
+    @Test
+    public void concurrentReadWrite() throws Exception {
+        final World world;
+        ExecutorService executor;
+        List<Future<String>> futures;
+
+        world = new World();
+        executor = Executors.newFixedThreadPool(4);
+        try {
+            futures = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                final int n = i;
+                futures.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        Node node;
+
+                        node = world.memoryNode("<root><a>" + n + "</a></root>");
+                        node.writeXml(node.readXml());
+                        return world.getXml().getSelector().string(node.readXml(), "/root/a");
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                assertEquals(Integer.toString(i), futures.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}